@@ -1,13 +1,14 @@
-import simulation.CarType;
 import simulation.Routes;
 import simulation.Simulation;
 import simulation.Statistics;
+import simulation.SweepExecutor;
 import util.CustomFormatter;
 import visualizer.Visualizer;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.logging.*;
 
 public class CarSimulation {
@@ -31,6 +32,7 @@ public class CarSimulation {
     private static final int MIN_STANDARD_DEVIATION = 21600;
     private static final int STANDARD_DEVIATION_CHANGE = 3600;
     private static final boolean isWinter = false;
+    private static final int WORKER_COUNT = Runtime.getRuntime().availableProcessors();
     private static boolean showUI = false;
 
     private static int simulationsRan = 0;
@@ -41,11 +43,6 @@ public class CarSimulation {
     private static final Random random = new Random();
 
     public static void main(String[] args) throws InterruptedException {
-        if (isWinter) {
-            for (CarType carType : CarType.values()) {
-                carType.itIsWinter();
-            }
-        }
         File dir = new File("./output");
         if (!dir.mkdirs()) {
             purgeDirectory(dir);
@@ -80,27 +77,31 @@ public class CarSimulation {
             statistics.export(simulation.getName());
         }
         else {
+            // Seeds are drawn in the same order as the runs are listed, so the output doesn't depend on WORKER_COUNT
+            List<Callable<AbstractMap.SimpleEntry<String, Statistics>>> jobs = new ArrayList<>(simulationCount);
             for (int carCount = MIN_CAR_COUNT; carCount <= MAX_CAR_COUNT; carCount += CAR_COUNT_CHANGE) {
                 for (int standardDeviation = MIN_STANDARD_DEVIATION; standardDeviation <= MAX_STANDARD_DEVIATION; standardDeviation += STANDARD_DEVIATION_CHANGE) {
                     for (int chargingPowerCoefficient = MIN_CHARGING_POWER_COEFFICIENT; chargingPowerCoefficient <= MAX_CHARGING_POWER_COEFFICIENT; chargingPowerCoefficient += CHARGING_POWER_COEFFICIENT_CHANGE) {
                         for (int chargerAmountCoefficient = MIN_CHARGER_AMOUNT_COEFFICIENT; chargerAmountCoefficient <= MAX_CHARGER_AMOUNT_COEFFICIENT; chargerAmountCoefficient += CHARGER_AMOUNT_COEFFICIENT_CHANGE) {
                             for (int batteryCapacityCoefficient = MIN_BATTERY_CAPACITY_COEFFICIENT; batteryCapacityCoefficient <= MAX_BATTERY_CAPACITY_COEFFICIENT; batteryCapacityCoefficient += BATTERY_CAPACITY_COEFFICIENT_CHANGE) {
                                 for (int i = 0; i < REPEAT_COUNT; i++) {
-                                    Routes routes = new Routes(random.nextLong(), (double) chargerAmountCoefficient / 100d);
-                                    routes.generateRoutes();
-                                    Simulation simulation = new Simulation(String.format("r%d-c%d-s%d-p%d-e%d-a%d-%s", i + 1, carCount, standardDeviation, chargingPowerCoefficient, batteryCapacityCoefficient, chargerAmountCoefficient, isWinter ? "w" : "s"), routes, carCount, standardDeviation, 4 * standardDeviation, false, isWinter, (double) batteryCapacityCoefficient / 100d, (double) chargingPowerCoefficient / 100d);
-                                    simulation.start();
-                                    simulationsRan++;
-                                    // Export simulation statistics
-                                    Statistics statistics = new Statistics(simulation);
-                                    statistics.export(simulation.getName());
-                                    printState((double) simulationsRan / simulationCount);
+                                    final long seed = random.nextLong();
+                                    final int repeat = i + 1, cars = carCount, deviation = standardDeviation, chargingPower = chargingPowerCoefficient, chargerAmount = chargerAmountCoefficient, batteryCapacity = batteryCapacityCoefficient;
+                                    jobs.add(() -> runSimulation(seed, repeat, cars, deviation, chargingPower, chargerAmount, batteryCapacity));
                                 }
                             }
                         }
                     }
                 }
             }
+
+            SweepExecutor<AbstractMap.SimpleEntry<String, Statistics>> sweepExecutor = new SweepExecutor<>(WORKER_COUNT);
+            sweepExecutor.run(jobs, (result, jobsDone) -> {
+                // Export simulation statistics
+                result.getValue().export(result.getKey());
+                simulationsRan = jobsDone;
+                printState((double) simulationsRan / simulationCount);
+            });
         }
 
         simulationEndTime = System.currentTimeMillis();
@@ -110,6 +111,14 @@ public class CarSimulation {
         logger.info(String.format("Ran %d simulations in %d minutes and %d seconds.", simulationCount, (int) ((totalTime / (1000*60)) / 60), (int) (totalTime / 1000) % 60));
     }
 
+    private static AbstractMap.SimpleEntry<String, Statistics> runSimulation(long seed, int repeat, int carCount, int standardDeviation, int chargingPowerCoefficient, int chargerAmountCoefficient, int batteryCapacityCoefficient) {
+        Routes routes = new Routes(seed, (double) chargerAmountCoefficient / 100d);
+        routes.generateRoutes();
+        Simulation simulation = new Simulation(String.format("r%d-c%d-s%d-p%d-e%d-a%d-%s", repeat, carCount, standardDeviation, chargingPowerCoefficient, batteryCapacityCoefficient, chargerAmountCoefficient, isWinter ? "w" : "s"), routes, carCount, standardDeviation, 4 * standardDeviation, false, isWinter, (double) batteryCapacityCoefficient / 100d, (double) chargingPowerCoefficient / 100d);
+        simulation.start();
+        return new AbstractMap.SimpleEntry<>(simulation.getName(), new Statistics(simulation));
+    }
+
     private static void purgeDirectory(File dir) {
         for (File file: Objects.requireNonNull(dir.listFiles())) {
             if (file.isDirectory())
@@ -131,15 +140,9 @@ public class CarSimulation {
         s.append(String.format("] %.1f%%   ", progress*100));
 
         if (simulationsRan != 0) {
-            /*
             double simulatingRate = (double) simulationsRan / (System.currentTimeMillis() - simulationStartTime);
-            double timeLeft = (simulationCount - simulationsRan) / simulatingRate;
-            if (timeLeft > 60000)
-                s.append(String.format("(%d minutes and %d seconds left)", (int) ((timeLeft / (1000*60)) % 60), (int) (timeLeft / 1000) % 60));
-            else
-                s.append(String.format("(%d seconds left)", (int) (timeLeft / 1000) % 60));
-             */
-            s.append(String.format("(%d simulations remaining)", simulationCount-simulationsRan));
+            long timeLeft = Math.round((simulationCount - simulationsRan) / simulatingRate / 1000);
+            s.append(String.format("(%d simulations remaining, %d h %d min %d s left)", simulationCount-simulationsRan, timeLeft / 3600, (timeLeft / 60) % 60, timeLeft % 60));
         }
 
         System.out.print(s);
@@ -0,0 +1,97 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Positions in Simulation.cars of the cars that are still on their way, in the order they are handled on each time
+ * step. A car that reaches its destination or runs out of battery is dropped from the set and only kept track of with
+ * counters, so finished cars don't have to be handled on every time step but are still included in the statistics.
+ * <p>
+ * Usage on each time step: beginTick(), then keep() or finish() for every active car in order, then endTick().
+ */
+class ActiveSet {
+
+    private int[] positions;
+    private int[] keptPositions;    // Positions of the next time step, so cars can be kept that weren't in the set
+    private int size;
+    private int kept;
+    private int knownCars;
+
+    private long[] finishTick;  // Indexed by position, -1 if the car hasn't finished
+    private int finishedCars;
+
+    ActiveSet(int capacity) {
+        positions = new int[Math.max(capacity, 16)];
+        keptPositions = new int[positions.length];
+        finishTick = new long[positions.length];
+    }
+
+    /**
+     * Adds the cars released onto the road since the last call.
+     */
+    void addNewCars(int carCount) {
+        if (carCount > positions.length) {
+            int capacity = Math.max(carCount, positions.length * 2);
+            positions = Arrays.copyOf(positions, capacity);
+            keptPositions = new int[capacity];
+            finishTick = Arrays.copyOf(finishTick, capacity);
+        }
+        for (int position = knownCars; position < carCount; position++) {
+            positions[size++] = position;
+            finishTick[position] = -1;
+        }
+        knownCars = carCount;
+    }
+
+    /**
+     * @return Amount of active cars
+     */
+    int beginTick() {
+        kept = 0;
+        return size;
+    }
+
+    int get(int i) {
+        return positions[i];
+    }
+
+    /**
+     * Keeps the car for the next time step. Cars have to be kept in the order of their positions.
+     */
+    void keep(int position) {
+        keptPositions[kept++] = position;
+    }
+
+    void finish(int position, long tick) {
+        finishTick[position] = tick;
+        finishedCars++;
+    }
+
+    void endTick() {
+        int[] previousPositions = positions;
+        positions = keptPositions;
+        keptPositions = previousPositions;
+        size = kept;
+    }
+
+    static boolean isFinished(Car.State state) {
+        return state == Car.State.DestinationReached || state == Car.State.BatteryDepleted;
+    }
+
+    boolean allCarsHaveFinished() {
+        return finishedCars == knownCars;
+    }
+
+    /**
+     * Finished cars keep collecting time in their final state until the end of the simulation.
+     *
+     * @param lastTick Last time step of the simulation
+     */
+    void creditFinishedCars(ArrayList<Car> cars, long lastTick, long TIME_STEP) {
+        for (int position = 0; position < knownCars; position++) {
+            if (finishTick[position] != -1)
+                cars.get(position).skipTicks(lastTick - finishTick[position], TIME_STEP);
+        }
+    }
+}
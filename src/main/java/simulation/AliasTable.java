@@ -0,0 +1,73 @@
+package simulation;
+
+import java.util.ArrayDeque;
+
+/**
+ * Samples an index with probabilities proportional to the given weights in constant time (Walker's alias method, with
+ * the table built as in Vose's algorithm).
+ */
+final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        double sum = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight))
+                throw new IllegalArgumentException("Weight can't be negative");
+            sum += weight;
+        }
+        if (n == 0 || sum <= 0)
+            throw new IllegalArgumentException("Weights have to add up to more than zero");
+
+        probability = new double[n];
+        alias = new int[n];
+        double[] scaled = new double[n];
+        ArrayDeque<Integer> small = new ArrayDeque<>();
+        ArrayDeque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1)
+                small.push(i);
+            else
+                large.push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1)
+                small.push(more);
+            else
+                large.push(more);
+        }
+        // Whatever is left is 1 up to rounding errors
+        while (!large.isEmpty()) {
+            int i = large.pop();
+            probability[i] = 1;
+            alias[i] = i;
+        }
+        while (!small.isEmpty()) {
+            int i = small.pop();
+            probability[i] = 1;
+            alias[i] = i;
+        }
+    }
+
+    /**
+     * @param u Uniformly distributed number in [0, 1)
+     */
+    int sample(double u) {
+        double x = u * probability.length;
+        int i = Math.min((int) x, probability.length - 1);
+        return x - i < probability[i] ? i : alias[i];
+    }
+
+    int size() {
+        return probability.length;
+    }
+}
@@ -1,43 +1,38 @@
 package simulation;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.LongPredicate;
 import java.util.logging.Logger;
 
+/**
+ * View of one car of a CarFleet. The state of the car is stored in the primitive arrays of the fleet.
+ */
 public class Car implements Comparable<Car> {
 
     private static final Logger logger = Logger.getGlobal();
 
-    private Route route;
-    private final CarType carType;
-    private final int index;
-    private final double DESTINATION_BATTERY_THRESHOLD = 0.1;
-    private final double BATTERY_CHARGING_THRESHOLD = 0.3;
-    private final double SPEED_ON_HIGHWAY = 120;
-    private final double SPEED_OUTSIDE_HIGHWAY = 30;
-    private final double EATING_DURATION = 45 * 60; // In seconds
-
-    private long timeStep;
-
-    private double drivingEfficiencyCoefficient;
-    private double hunger; // In seconds since last eaten
-    private double timeSinceLastShopped;
-    private double timeSpentCharging;
-    private double battery;
-    private double drivenDistance;
-    private double distanceFromHighway;
-    private double drivingSpeed;
-    private int currentChargingStationIndex;
-    private int nextChargingStationIndex;
-    private boolean continueDriving;
-    private ChargingStation.Charger currentCharger;
-    private State state;
-    private long[] stateTime;   //  In seconds
-    private double destinationDistanceFromEndPoint; // Is never changed, assigned once in setRoute
-    private int creationTime;
-    private int timesCharged;
+    private static final double DESTINATION_BATTERY_THRESHOLD = 0.1;
+    private static final double BATTERY_CHARGING_THRESHOLD = 0.3;
+    static final double SPEED_ON_HIGHWAY = 120;
+    static final double SPEED_OUTSIDE_HIGHWAY = 30;
+    private static final double EATING_DURATION = 45 * 60; // In seconds
+    // How often a waiting car reconsiders going to another station when nothing happens at its own station
+    private static final long WAITING_PATIENCE = 5 * 60; // In seconds
+    private static final double HUNGER_THRESHOLD = 3 * 60 * 60; // In seconds
+    // Distances closer than this are considered equal. Without it, whether a car reaches a point exactly a whole
+    // amount of time steps away depends on rounding errors. Such points are common: distances from the highway are in
+    // tenths of a kilometre, and a time step off the highway is 1/12 km. Cars reaching them a time step earlier than
+    // with exact comparisons also changes the results of the tick engine compared to its results before the other
+    // engines were added. Every engine moves cars with driveSteps(), so they all see the same rounding errors
+    static final double DISTANCE_EPSILON = 1e-9; // km
+
+    private final CarFleet fleet;
+    final int slot;
 
     @Override
     public int compareTo(Car car) {
-        return this.index - car.index;
+        return getIndex() - car.getIndex();
     }
 
     public enum State {
@@ -58,45 +53,156 @@ public class Car implements Comparable<Car> {
         }
     };
 
-    public Car(CarType carType_, int index_, double drivingEfficiencyCoefficient_) {
-        carType = carType_;
-        index = index_;
+    private static final State[] STATES = State.values();
+
+    Car(CarFleet fleet_, CarType carType_, int index_, int slot_) {
+        fleet = fleet_;
+        slot = slot_;
+        fleet.cars[slot] = this;
+        fleet.carType[slot] = carType_;
+        fleet.index[slot] = index_;
+        fleet.slotOfIndex[index_] = slot;
+
+        fleet.battery[slot] = getCapacity();
+
+        fleet.drivenDistance[slot] = 0;
+        fleet.drivingSpeed[slot] = SPEED_ON_HIGHWAY;
+        fleet.currentChargingStationIndex[slot] = -1;
+        fleet.nextChargingStationIndex[slot] = -1;
+        fleet.state[slot] = (byte) State.OnWayToHighway.index;
+        fleet.distanceFromHighway[slot] = 0;
+        fleet.continueDriving[slot] = false;
+        fleet.currentCharger[slot] = null;
+        fleet.hunger[slot] = 0;
+        fleet.timeSinceLastShopped[slot] = 0;
+        logger.info(() -> String.format("Created car: %s", this.toString()));
+
+        fleet.timesCharged[slot] = 0;
+    }
 
-        battery = carType.getCapacity();
+    /**
+     * Drives the given amount of time steps further in the current leg. Every engine moves driving cars with this, so
+     * the position and battery level after a time step are the same whichever engine moved the car.
+     */
+    void driveSteps(long steps) {
+        long legSteps = fleet.legSteps[slot] + steps;
+        fleet.legSteps[slot] = legSteps;
+        if (getState() == State.OnHighway)
+            fleet.drivenDistance[slot] = legPosition(legSteps);
+        else
+            fleet.distanceFromHighway[slot] = legPosition(legSteps);
+        fleet.battery[slot] = legBattery(legSteps);
+    }
 
-        drivenDistance = 0;
-        drivingSpeed = SPEED_ON_HIGHWAY;
-        currentChargingStationIndex = -1;
-        drivingEfficiencyCoefficient = drivingEfficiencyCoefficient_;
-        nextChargingStationIndex = -1;
-        state = State.OnWayToHighway;
-        distanceFromHighway = 0;
-        continueDriving = false;
-        currentCharger = null;
-        hunger = 0;
-        timeSinceLastShopped = 0;
-        stateTime = new long[9];
-        logger.info(String.format("Created car: %s", this.toString()));
+    /**
+     * @return Distance driven in one time step
+     */
+    private double stepDistance() {
+        return fleet.drivingSpeed[slot] * (fleet.timeStep / 3600d);
+    }
 
-        timesCharged = 0;
+    /**
+     * @return drivenDistance on the highway, otherwise distanceFromHighway, after the given time steps of the leg
+     */
+    private double legPosition(long steps) {
+        switch (getState()) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+                return fleet.legStartDistance[slot] - steps * stepDistance();
+            default:
+                return fleet.legStartDistance[slot] + steps * stepDistance();
+        }
     }
 
-    public double drive() {
-        double deltaDistance = drivingSpeed * (timeStep / 3600d);
+    /**
+     * @return Battery level after the given time steps of the leg
+     */
+    private double legBattery(long steps) {
+        double battery = fleet.legStartBattery[slot] - batteryUsedForDistance(steps * stepDistance());
+        return battery < 0 ? 0 : battery;
+    }
 
-        if (battery - batteryUsedForDistance(deltaDistance) < 0)
-            battery = 0;
-        else
-            battery -= batteryUsedForDistance(deltaDistance);
+    /**
+     * Starts a leg in the current driving state and finds the time step on which it ends. The state of the car can
+     * only change on that time step, so engines can skip the time steps before it.
+     */
+    private void startLeg() {
+        fleet.legSteps[slot] = 0;
+        fleet.legStartDistance[slot] = getState() == State.OnHighway ? fleet.drivenDistance[slot] : fleet.distanceFromHighway[slot];
+        fleet.legStartBattery[slot] = fleet.battery[slot];
+
+        double stepDistance = stepDistance();
+        double estimate;
+        switch (getState()) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+                estimate = fleet.distanceFromHighway[slot] / stepDistance;
+                break;
+            case OnHighway:
+                estimate = (fleet.route[slot].getLength() - fleet.drivenDistance[slot]) / stepDistance;
+                if (!fleet.continueDriving[slot])
+                    estimate = Math.min(estimate, (fleet.route[slot].getStationOffsets()[fleet.currentChargingStationIndex[slot]] - fleet.drivenDistance[slot]) / stepDistance);
+                break;
+            case OnWayToCharger:
+                estimate = (currentChargingStation().getDistanceFromHighway() - fleet.distanceFromHighway[slot]) / stepDistance;
+                break;
+            case OnWayFromHighway:
+                estimate = (fleet.destinationDistanceFromEndPoint[slot] - fleet.distanceFromHighway[slot]) / stepDistance;
+                break;
+            default:
+                throw new IllegalStateException(String.format("%s is not a driving state", getState()));
+        }
+        estimate = Math.min(estimate, fleet.battery[slot] / batteryUsedForDistance(stepDistance));
+        fleet.legEndStep[slot] = firstLegStep(0, estimate, step -> legBattery(step) <= 0 || hasArrived(legPosition(step)));
+    }
+
+    /**
+     * @param estimate Estimate of the time step, off by at most a few time steps because of rounding
+     * @param condition Stays true on every time step after the first one it is true on
+     * @return First time step of the leg after the given one on which the condition is true
+     */
+    private static long firstLegStep(long after, double estimate, LongPredicate condition) {
+        long step = Math.max(after + 1, (long) Math.ceil(estimate));
+        while (step > after + 1 && condition.test(step - 1))
+            step--;
+        while (!condition.test(step))
+            step++;
+        return step;
+    }
+
+    /**
+     * @param position drivenDistance on the highway, otherwise distanceFromHighway
+     * @return Whether the car has reached the point where its current driving state ends
+     */
+    private boolean hasArrived(double position) {
+        switch (getState()) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+                return position <= DISTANCE_EPSILON;
+            case OnHighway:
+                return hasReachedRouteEnd(position) || (!fleet.continueDriving[slot] && hasPassedStationExit(position));
+            case OnWayToCharger:
+                return position >= currentChargingStation().getDistanceFromHighway() - DISTANCE_EPSILON;
+            case OnWayFromHighway:
+                return position >= fleet.destinationDistanceFromEndPoint[slot] - DISTANCE_EPSILON;
+            default:
+                return false;
+        }
+    }
+
+    private boolean hasReachedRouteEnd(double drivenDistance) {
+        return drivenDistance >= fleet.route[slot].getLength() - DISTANCE_EPSILON;
+    }
 
-        return deltaDistance;
+    private boolean hasPassedStationExit(double drivenDistance) {
+        return fleet.route[slot].getStationOffsets()[fleet.currentChargingStationIndex[slot]] - drivenDistance < -DISTANCE_EPSILON;
     }
 
     public void tick(long TIME_STEP) {
-        timeStep = TIME_STEP;
-        hunger += timeStep;
-        timeSinceLastShopped += timeStep;
-        switch (state) {
+        fleet.timeStep = TIME_STEP;
+        fleet.hunger[slot] += fleet.timeStep;
+        fleet.timeSinceLastShopped[slot] += fleet.timeStep;
+        switch (getState()) {
             case OnWayToHighway:
                 driveToHighway();
                 break;
@@ -110,7 +216,11 @@ public class Car implements Comparable<Car> {
                 driveFromStation();
                 break;
             case Waiting:
-                waitOnStation();
+                if (isDueToReconsider()) {
+                    fleet.wokenUp[slot] = false;
+                    fleet.waitingDeadline[slot] = waitingDeadline();
+                    waitOnStation();
+                }
                 break;
             case Charging:
                 charge();
@@ -119,215 +229,356 @@ public class Car implements Comparable<Car> {
                 driveFromHighway();
                 break;
         }
-        if (battery <= 0 && state != State.BatteryDepleted) {
-            logger.fine(String.format("%s: %s", this.toString(), "Battery depleted"));
-            state = State.BatteryDepleted;
+        if (fleet.battery[slot] <= 0 && getState() != State.BatteryDepleted) {
+            setState(State.BatteryDepleted);
+        }
+        fleet.stateTime[slot * CarFleet.STATE_COUNT + fleet.state[slot]] += fleet.timeStep;
+    }
+
+    /**
+     * Moves the car forward by the given amount of time steps, during which its state is known not to change.
+     * Has the same effect as calling tick() the same amount of times, but takes constant time.
+     */
+    public void skipTicks(long ticks, long TIME_STEP) {
+        if (ticks <= 0)
+            return;
+        fleet.timeStep = TIME_STEP;
+        long elapsedTime = ticks * fleet.timeStep;
+        fleet.hunger[slot] += elapsedTime;
+        fleet.timeSinceLastShopped[slot] += elapsedTime;
+        fleet.stateTime[slot * CarFleet.STATE_COUNT + fleet.state[slot]] += elapsedTime;
+
+        switch (getState()) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+            case OnHighway:
+            case OnWayToCharger:
+            case OnWayFromHighway:
+                driveSteps(ticks);
+                return;
+            case Charging:
+                fleet.timeSpentCharging[slot] += elapsedTime;
+                fleet.chargingSteps[slot] = (int) Math.min(fleet.chargingFullSteps[slot], fleet.chargingSteps[slot] + ticks);
+                fleet.battery[slot] = batteryAfterChargingSteps(fleet.chargingSteps[slot]);
+                return;
+            case Waiting:
+            case BatteryDepleted:
+            case DestinationReached:
+                return;
+            default:
+                throw new IllegalStateException(String.format("Can't skip ticks in state %s", getState()));
+        }
+    }
+
+    /**
+     * @return After how many time steps the state of the car changes next, at least 1. Exact for driving and charging
+     * cars. Waiting cars may also change their state when they are woken up
+     */
+    public long ticksUntilStateChange(long TIME_STEP) {
+        switch (getState()) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+            case OnHighway:
+            case OnWayToCharger:
+            case OnWayFromHighway:
+                return Math.max(1, fleet.legEndStep[slot] - fleet.legSteps[slot]);
+            case Waiting:
+                return Math.max(1, ticksUntilWaitingDeadline(TIME_STEP));
+            case Charging:
+                return ticksUntilChargingDone(TIME_STEP);
+            default:
+                return 1;
         }
-        stateTime[state.index] += timeStep;
     }
 
     public void driveToHighway() {
-        distanceFromHighway -= drive();
-
-        if (distanceFromHighway <= 0) {
-            distanceFromHighway = 0;
-            state = State.OnHighway;
-            currentChargingStationIndex = calculateNextChargingStationIndex();
-            if (currentChargingStationIndex == -1){
-                if (!continueDriving)
-                    continueDriving = true;
+        driveSteps(1);
+
+        if (hasArrived(fleet.distanceFromHighway[slot])) {
+            fleet.distanceFromHighway[slot] = 0;
+            setState(State.OnHighway);
+            fleet.currentChargingStationIndex[slot] = calculateNextChargingStationIndex();
+            if (fleet.currentChargingStationIndex[slot] == -1){
+                if (!fleet.continueDriving[slot])
+                    fleet.continueDriving[slot] = true;
             }
+            startLeg();
         }
     }
 
     public void driveFromHighway() {
-        distanceFromHighway += drive();
+        driveSteps(1);
 
-        if (distanceFromHighway >= destinationDistanceFromEndPoint) {
-            state = State.DestinationReached;
-            logger.info(String.format("%s: %s", this.toString(), "Destination reached"));
+        if (hasArrived(fleet.distanceFromHighway[slot])) {
+            setState(State.DestinationReached);
         }
     }
 
     public void waitOnStation() {
-        ChargingStation.Charger availableCharger = route.getChargingStations().get(currentChargingStationIndex).getAvailableCharger(carType.getSupportedChargers());
-        int nextInQueue = route.getChargingStations().get(currentChargingStationIndex).getNextInQueue();
-        if (availableCharger != null && (nextInQueue == index || nextInQueue == -1)) {
+        ChargingStation.Charger availableCharger = currentChargingStation().getAvailableCharger(fleet.carType[slot].getSupportedChargerMask());
+        int nextInQueue = currentChargingStation().getNextInQueue();
+        if (availableCharger != null && (nextInQueue == fleet.index[slot] || nextInQueue == -1)) {
             assert !availableCharger.isInUse();
-            availableCharger.setInUse(true);
-            route.getChargingStations().get(currentChargingStationIndex).removeFromQueue(index);
-            currentCharger = availableCharger;
-            state = State.Charging;
-            timesCharged++;
+            acquireCharger(availableCharger);
+            leaveQueue();
+            startCharging();
         }
         else {
             // Calculate whether it is best to go to the next charging station
-            int bestChargingStationIndex = currentChargingStationIndex;
-            double bestChargingStationPreferencePoints = calculatePreferencePoints(currentChargingStationIndex);
-            for (int i = 1; i <= route.getChargingStations().size(); i++) {
+            int bestChargingStationIndex = fleet.currentChargingStationIndex[slot];
+            double bestChargingStationPreferencePoints = calculatePreferencePoints(fleet.currentChargingStationIndex[slot]);
+            // Stations further along the highway than the car can drive can't be reached whatever their distance from it
+            int lastStation = lastReachableStationAlongHighway();
+            for (int i = 1; fleet.currentChargingStationIndex[slot] + i <= lastStation; i++) {
                 if (
-                    currentChargingStationIndex + i <= route.getChargingStations().size() - 1 &&
-                    route.getChargingStations().get(currentChargingStationIndex + i).hasChargerType(carType.getSupportedChargers()) &&
-                    canReachChargingStation(currentChargingStationIndex + i))
+                    fleet.currentChargingStationIndex[slot] + i <= fleet.route[slot].getChargingStations().size() - 1 &&
+                    chargingStopPlan().isSupported(fleet.currentChargingStationIndex[slot] + i) &&
+                    canReachChargingStation(fleet.currentChargingStationIndex[slot] + i))
                 {
-                    double preferencePoints = calculatePreferencePoints(currentChargingStationIndex + i);
+                    double preferencePoints = calculatePreferencePoints(fleet.currentChargingStationIndex[slot] + i);
                     if (preferencePoints < bestChargingStationPreferencePoints) {
-                        bestChargingStationIndex = currentChargingStationIndex + i;
+                        bestChargingStationIndex = fleet.currentChargingStationIndex[slot] + i;
                         bestChargingStationPreferencePoints = preferencePoints;
                     }
-                } else if (currentChargingStationIndex + i > route.getChargingStations().size() - 1 || !canReachChargingStation(currentChargingStationIndex + 1)) {
+                } else if (fleet.currentChargingStationIndex[slot] + i > fleet.route[slot].getChargingStations().size() - 1 || !canReachChargingStation(fleet.currentChargingStationIndex[slot] + 1)) {
                     break;
                 }
             }
-            if (bestChargingStationIndex != currentChargingStationIndex) {
-                route.getChargingStations().get(currentChargingStationIndex).removeFromQueue(index);
-                nextChargingStationIndex = bestChargingStationIndex;
-                logger.finer(String.format(
-                        "%s: %s", this.toString(), "Continue to next charger: " +
-                                route.getChargingStations().get(nextChargingStationIndex).toString()
-                ));
-                state = State.OnWayFromCharger;
+            if (bestChargingStationIndex != fleet.currentChargingStationIndex[slot]) {
+                leaveQueue();
+                fleet.nextChargingStationIndex[slot] = bestChargingStationIndex;
+                setState(State.OnWayFromCharger);
+                startLeg();
             }
         }
     }
 
     public boolean canReachNextPlace(boolean isLastCharger) {
+        return canReachNextPlace(isLastCharger, fleet.battery[slot]);
+    }
+
+    private boolean canReachNextPlace(boolean isLastCharger, double battery) {
         if (!isLastCharger) {
-            for (int i = currentChargingStationIndex + 1; i < route.getChargingStations().size(); i++) {
-                if (route.getChargingStations().get(i).hasChargerType(carType.getSupportedChargers()))
-                    return canReachChargingStation(i);
-            }
+            int nextStation = chargingStopPlan().nextSupportedStation(fleet.currentChargingStationIndex[slot] + 1);
+            if (nextStation < fleet.route[slot].getChargingStations().size())
+                return canReachChargingStation(nextStation, battery);
         }
-        return canReachDestination();
+        return canReachDestination(battery);
     }
 
     public void charge() {
-        timeSpentCharging += timeStep;
-        boolean isLastCharger = currentChargingStationIndex >= route.getChargingStations().size() - 1;
+        fleet.timeSpentCharging[slot] += fleet.timeStep;
 
-        if ((battery >= carType.getCapacity() * 0.8 && canReachNextPlace(isLastCharger)) || battery >= carType.getCapacity()) {
-            if (route.getChargingStations().get(currentChargingStationIndex).isHasFood() && timeSpentCharging < EATING_DURATION ) {
+        if (fleet.chargingSteps[slot] >= fleet.chargingFullSteps[slot]) {
+            if (currentChargingStation().isHasFood() && fleet.timeSpentCharging[slot] < EATING_DURATION ) {
                 return;
             }
-            if (route.getChargingStations().get(currentChargingStationIndex).isHasFood()) {
-                hunger = 0;
+            if (currentChargingStation().isHasFood()) {
+                fleet.hunger[slot] = 0;
             }
-            if (route.getChargingStations().get(currentChargingStationIndex).isHasShop()) {
-                timeSinceLastShopped = 0;
+            if (currentChargingStation().isHasShop()) {
+                fleet.timeSinceLastShopped[slot] = 0;
             }
-            currentCharger.setInUse(false);
-            currentCharger = null;
-            state = State.OnWayFromCharger;
-            logger.fine(String.format(
-                    "%s: %s", this.toString(),
-                    "Leaving charging station: " +
-                            route.getChargingStations().get(currentChargingStationIndex).toString())
-            );
+            releaseCharger();
+            setState(State.OnWayFromCharger);
+            startLeg();
         } else {
-            double batteryBefore = battery;
-            double maxChargingPower;
-            if (currentCharger.getType() == ChargingStation.ChargerType.Type2 || currentCharger.getType() == ChargingStation.ChargerType.Tyomaapistoke) {
-                maxChargingPower = Math.min(carType.getMaxChargingPowerAC(), currentCharger.getPower());
-            }
-            else {
-                maxChargingPower = Math.min(carType.getMaxChargingPowerDC(), currentCharger.getPower());
-            }
-            // 0% - 5%
-            if (battery / carType.getCapacity() < 0.05) {
-                // y = k (x - x0) + y0
-                double power = (0.6 * maxChargingPower / (0.05 * carType.getCapacity()) * battery + 0.4 * maxChargingPower);
-                battery += power * (timeStep / 3600d);
-            }
-            // 5% - 25%
-            else if (battery / carType.getCapacity() < 0.25) {
-                battery += Math.min(maxChargingPower, currentCharger.getPower()) * (timeStep / 3600d);
-            }
-            // 25% - 100%
-            else {
-                // y = k (x - x0) + y0
-                double power = (-0.9 * maxChargingPower / (0.75 * carType.getCapacity()) * (battery - 0.25 * carType.getCapacity()) + maxChargingPower);
-                battery += power * (timeStep / 3600d);
-            }
-            if (battery - batteryBefore <= 0) {
-                logger.severe(String.format(
-                        "%s: %s [%s]", this.toString(), "Car is not charging!", route.getChargingStations().get(currentChargingStationIndex).toString()
-                ));
-            }
+            fleet.chargingSteps[slot]++;
+            fleet.battery[slot] = batteryAfterChargingSteps(fleet.chargingSteps[slot]);
         }
-        if (battery >= carType.getCapacity())
-            battery = carType.getCapacity();
+    }
+
+    /**
+     * Starts charging at the acquired charger. While charging, whether the car is charged enough to leave only depends
+     * on its battery level, which only grows, so the time step after which it is charged enough is found right away.
+     */
+    private void startCharging() {
+        fleet.chargingModel[slot] = fleet.parameters.getChargingModel(fleet.carType[slot], fleet.currentCharger[slot]);
+        fleet.chargingStartBattery[slot] = fleet.battery[slot];
+        fleet.chargingSteps[slot] = 0;
+
+        // The battery is full after this many time steps at the latest
+        double secondsToFull = fleet.chargingModel[slot].secondsToReach(fleet.battery[slot], getCapacity());
+        int low = 0;
+        int high = (int) Math.min(Integer.MAX_VALUE - 1, Math.ceil(secondsToFull / fleet.timeStep)) + 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (isChargedEnough(batteryAfterChargingSteps(middle)))
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        fleet.chargingFullSteps[slot] = low;
+
+        setState(State.Charging);
+        fleet.timesCharged[slot]++;
+    }
+
+    private boolean isChargedEnough(double battery) {
+        boolean isLastCharger = fleet.currentChargingStationIndex[slot] >= fleet.route[slot].getChargingStations().size() - 1;
+        return (battery >= getCapacity() * 0.8 && canReachNextPlace(isLastCharger, battery)) || battery >= getCapacity();
+    }
+
+    /**
+     * @return Battery level after charging the given amount of time steps at the current charger
+     */
+    private double batteryAfterChargingSteps(long steps) {
+        double battery = fleet.chargingModel[slot].batteryAfter(fleet.chargingStartBattery[slot], steps * fleet.timeStep);
+        return Math.min(battery, getCapacity());
+    }
+
+    /**
+     * @return Time steps until a charging car leaves its charger
+     */
+    private long ticksUntilChargingDone(long TIME_STEP) {
+        long ticks = Math.max(1, fleet.chargingFullSteps[slot] - fleet.chargingSteps[slot] + 1);
+        if (currentChargingStation().isHasFood())
+            ticks = Math.max(ticks, (long) Math.ceil((EATING_DURATION - fleet.timeSpentCharging[slot]) / TIME_STEP));
+        return ticks;
     }
 
     public void driveToStation() {
-        distanceFromHighway += drive();
+        driveSteps(1);
 
-        ChargingStation station = route.getChargingStations().get(currentChargingStationIndex);
-        if (distanceFromHighway >= station.getDistanceFromHighway()) {
-            ChargingStation.Charger availableCharger = station.getAvailableCharger(carType.getSupportedChargers());
+        ChargingStation station = currentChargingStation();
+        if (hasArrived(fleet.distanceFromHighway[slot])) {
+            ChargingStation.Charger availableCharger = station.getAvailableCharger(fleet.carType[slot].getSupportedChargerMask());
             if (availableCharger == null) {
-                logger.finer(String.format(
-                        "%s: %s", this.toString(), "Going to wait at charger: " +
-                                route.getChargingStations().get(currentChargingStationIndex).toString()
-                ));
-                state = State.Waiting;
-                route.getChargingStations().get(currentChargingStationIndex).addToQueue(index);
+                setState(State.Waiting);
+                currentChargingStation().addToQueue(fleet.index[slot]);
+                fleet.wokenUp[slot] = false;
+                fleet.waitingDeadline[slot] = fleet.simulation.getPassedSeconds() + fleet.timeStep;
             } else {
-                availableCharger.setInUse(true);
-                currentCharger = availableCharger;
-                logger.fine(String.format(
-                        "%s: %s", this.toString(),
-                        "Entering charging station: " +
-                                route.getChargingStations().get(currentChargingStationIndex).toString())
-                );
-                state = State.Charging;
-                timesCharged++;
+                acquireCharger(availableCharger);
+                startCharging();
             }
         }
     }
 
     public void driveFromStation() {
-        distanceFromHighway -= drive();
+        driveSteps(1);
 
-        if (distanceFromHighway <= 0) {
+        if (hasArrived(fleet.distanceFromHighway[slot])) {
             // Check if car has left the previous charging station without getting to charge
-            if (nextChargingStationIndex != -1) {
-                currentChargingStationIndex = nextChargingStationIndex;
-                nextChargingStationIndex = -1;
+            if (fleet.nextChargingStationIndex[slot] != -1) {
+                fleet.currentChargingStationIndex[slot] = fleet.nextChargingStationIndex[slot];
+                fleet.nextChargingStationIndex[slot] = -1;
             }
             else {
-                currentChargingStationIndex = calculateNextChargingStationIndex();
-                if (currentChargingStationIndex == -1){
-                    if (!continueDriving)
-                        continueDriving = true;
+                fleet.currentChargingStationIndex[slot] = calculateNextChargingStationIndex();
+                if (fleet.currentChargingStationIndex[slot] == -1){
+                    if (!fleet.continueDriving[slot])
+                        fleet.continueDriving[slot] = true;
                 }
             }
 
-            drivingSpeed = SPEED_ON_HIGHWAY;
-            distanceFromHighway = 0;
-            state = State.OnHighway;
+            fleet.drivingSpeed[slot] = SPEED_ON_HIGHWAY;
+            fleet.distanceFromHighway[slot] = 0;
+            setState(State.OnHighway);
+            startLeg();
         }
     }
 
     public void driveOnHighway() {
-        drivenDistance += drive();
-                
-        if (drivenDistance >= route.getLength()) {
-            state = State.OnWayFromHighway;
+        driveSteps(1);
+
+        if (hasReachedRouteEnd(fleet.drivenDistance[slot])) {
+            setState(State.OnWayFromHighway);
+            startLeg();
             return;
         }
 
-        if (continueDriving)
+        if (fleet.continueDriving[slot])
             return;
 
-        if (route.getChargingStationDistances().get(currentChargingStationIndex) - drivenDistance < 0) {
-            state = State.OnWayToCharger;
-            drivingSpeed = SPEED_OUTSIDE_HIGHWAY;
-            distanceFromHighway = 0;
+        if (hasPassedStationExit(fleet.drivenDistance[slot])) {
+            setState(State.OnWayToCharger);
+            fleet.drivingSpeed[slot] = SPEED_OUTSIDE_HIGHWAY;
+            fleet.distanceFromHighway[slot] = 0;
+            startLeg();
         }
     }
 
+    private void acquireCharger(ChargingStation.Charger charger) {
+        charger.setInUse(true);
+        fleet.currentCharger[slot] = charger;
+        if (fleet.listener != null)
+            fleet.listener.chargerAcquired(this, currentChargingStation(), charger, fleet.simulation.getPassedSeconds());
+    }
+
+    private void releaseCharger() {
+        ChargingStation.Charger charger = fleet.currentCharger[slot];
+        charger.setInUse(false);
+        fleet.currentCharger[slot] = null;
+        if (fleet.listener != null)
+            fleet.listener.chargerReleased(this, currentChargingStation(), charger, fleet.simulation.getPassedSeconds());
+        wakeUpNextInQueue(currentChargingStation());
+    }
+
+    private void leaveQueue() {
+        ChargingStation station = currentChargingStation();
+        boolean wasFirst = station.getNextInQueue() == fleet.index[slot];
+        station.removeFromQueue(fleet.index[slot]);
+        if (wasFirst)
+            wakeUpNextInQueue(station);
+    }
+
+    /**
+     * Only the first car in the queue can take a free charger, so it is the only one that has to react when a charger
+     * is released or the queue moves forward.
+     */
+    private void wakeUpNextInQueue(ChargingStation station) {
+        int nextInQueue = station.getNextInQueue();
+        if (nextInQueue != -1)
+            fleet.getCar(nextInQueue).wakeUp();
+    }
+
+    /**
+     * Makes a waiting car reconsider its options on its next time step.
+     */
+    void wakeUp() {
+        fleet.wokenUp[slot] = true;
+        if (fleet.wakeUpHandler != null)
+            fleet.wakeUpHandler.accept(slot);
+    }
+
+    /**
+     * A waiting car only tries to get a charger or go to another station when it has been woken up, has run out of
+     * patience or has just got hungry. Changes in the queues of the other stations are therefore noticed up to
+     * WAITING_PATIENCE late, which changes the results compared to a car reconsidering on every time step.
+     */
+    private boolean isDueToReconsider() {
+        return fleet.wokenUp[slot] || fleet.simulation.getPassedSeconds() >= fleet.waitingDeadline[slot];
+    }
+
+    /**
+     * @return When a waiting car that isn't woken up next reconsiders its options: once its patience runs out, or on
+     * the time step it gets hungry if that is earlier, as the stations it prefers may then change
+     */
+    private long waitingDeadline() {
+        long seconds = fleet.simulation.getPassedSeconds();
+        long deadline = seconds + WAITING_PATIENCE;
+        if (fleet.hunger[slot] <= HUNGER_THRESHOLD) {
+            long ticksUntilHungry = (long) Math.floor((HUNGER_THRESHOLD - fleet.hunger[slot]) / fleet.timeStep) + 1;
+            deadline = Math.min(deadline, seconds + ticksUntilHungry * fleet.timeStep);
+        }
+        return deadline;
+    }
+
+    /**
+     * @return Time steps until a waiting car that isn't woken up reconsiders its options
+     */
+    long ticksUntilWaitingDeadline(long TIME_STEP) {
+        long seconds = fleet.waitingDeadline[slot] - fleet.simulation.getPassedSeconds();
+        return (seconds + TIME_STEP - 1) / TIME_STEP;
+    }
+
+    private ChargingStation currentChargingStation() {
+        return fleet.route[slot].getChargingStations().get(fleet.currentChargingStationIndex[slot]);
+    }
+
     private double distanceFromStartToChargingStation(int i) {
-        return route.getChargingStationDistances().get(i) + route.getChargingStations().get(i).getDistanceFromHighway();
+        return fleet.route[slot].getStationReach()[i];
     }
 
     /**
@@ -335,22 +586,20 @@ public class Car implements Comparable<Car> {
      */
     private int calculateNextChargingStationIndex() {
 
-        double maximumDistance = battery / carType.getDrivingEfficiency() * 100 * (1 - DESTINATION_BATTERY_THRESHOLD) + drivenDistance;
+        double maximumDistance = fleet.battery[slot] / fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) * 100 * (1 - DESTINATION_BATTERY_THRESHOLD) + fleet.drivenDistance[slot];
 
-        if (maximumDistance > route.getLength() + destinationDistanceFromEndPoint) {
+        if (maximumDistance > fleet.route[slot].getLength() + fleet.destinationDistanceFromEndPoint[slot]) {
             return -1;
         }
 
-        int previousChargingStationIndex = currentChargingStationIndex;
+        int previousChargingStationIndex = fleet.currentChargingStationIndex[slot];
         int preferredStationIndex = -1;
         double mostPreferencePoints = Double.MAX_VALUE;
 
-        for (int i = previousChargingStationIndex + 1; i < route.getChargingStations().size(); i++) {
-            if (distanceFromStartToChargingStation(i) > maximumDistance) {
-                break;
-            }
-            if (!route.getChargingStations().get(i).hasChargerType(carType.getSupportedChargers()))
-                continue;
+        // Stations are considered up to the first one that is too far
+        ChargingStopPlanner.Plan plan = chargingStopPlan();
+        int end = fleet.route[slot].firstStationBeyond(previousChargingStationIndex + 1, maximumDistance);
+        for (int i = plan.nextSupportedStation(previousChargingStationIndex + 1); i < end; i = plan.nextSupportedStation(i + 1)) {
             double preferencePoints = calculatePreferencePoints(i);
             if (preferencePoints < mostPreferencePoints) {
                 mostPreferencePoints = preferencePoints;
@@ -362,113 +611,228 @@ public class Car implements Comparable<Car> {
     }
 
     private double calculatePreferencePoints(int chargingStationIndex) {
-
-        ChargingStation chargingStation = route.getChargingStations().get(chargingStationIndex);
-
-        boolean isDC =
-                chargingStation.getChargers().get(0).getType() == ChargingStation.ChargerType.CHAdeMO ||
-                chargingStation.getChargers().get(0).getType() == ChargingStation.ChargerType.CCS ||
-                chargingStation.getChargers().get(0).getType() == ChargingStation.ChargerType.Tesla;
-
-        double personalChargerPower = Math.min(chargingStation.getChargers().get(0).getPower(), isDC ? carType.getMaxChargingPowerDC() : carType.getMaxChargingPowerAC());
-
-        double averageChargerPower = Math.min(chargingStation.getChargers().get(0).getPower(), isDC ? CarType.getAverageChargingPowerDC() : CarType.getAverageChargingPowerAC());
-
-        double estimatedWaitingTime = carType.getCapacity() / personalChargerPower + CarType.getAverageCapacity() / averageChargerPower * chargingStation.getQueueLength() / (2 * chargingStation.getChargers().size());
-
-        double timeTax = 0;
-
-        if (hunger > 10800 && !chargingStation.isHasFood() && !chargingStation.isHasShop()) timeTax += 1800;
-
-        double maxDistance = battery / carType.getDrivingEfficiency() * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
-        double optimalDistance = battery / carType.getDrivingEfficiency() * 100 * (1 - BATTERY_CHARGING_THRESHOLD) + drivenDistance;
+        double maxDistance = fleet.battery[slot] / fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
+        double optimalDistance = fleet.battery[slot] / fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) * 100 * (1 - BATTERY_CHARGING_THRESHOLD) + fleet.drivenDistance[slot];
         double distanceToChargingStation = distanceFromStartToChargingStation(chargingStationIndex) - optimalDistance;
 
-        timeTax += Math.min(Math.pow(distanceToChargingStation, 2) / Math.pow(maxDistance, 2) * 45000, 4050);
+        return chargingStopPlan().preferencePoints(
+                chargingStationIndex,
+                fleet.route[slot].getChargingStations().get(chargingStationIndex).getQueueLength(),
+                fleet.hunger[slot] > HUNGER_THRESHOLD,
+                distanceToChargingStation,
+                maxDistance
+        );
+    }
 
-        return estimatedWaitingTime + timeTax;
+    /**
+     * @return Plan of the route of the car for its car type, looked up on the first call after the route is set
+     */
+    private ChargingStopPlanner.Plan chargingStopPlan() {
+        ChargingStopPlanner.Plan plan = fleet.chargingStopPlan[slot];
+        if (plan == null) {
+            plan = fleet.planner.getPlan(fleet.route[slot], fleet.carType[slot]);
+            fleet.chargingStopPlan[slot] = plan;
+        }
+        return plan;
     }
 
-    private boolean canReachDestination() {
-        double maximumDistance = battery / carType.getDrivingEfficiency() * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
-        double distanceToDestination = distanceFromHighway + (route.getLength() - drivenDistance) + destinationDistanceFromEndPoint;
+    private boolean canReachDestination(double battery) {
+        double maximumDistance = battery / fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
+        double distanceToDestination = fleet.distanceFromHighway[slot] + (fleet.route[slot].getLength() - fleet.drivenDistance[slot]) + fleet.destinationDistanceFromEndPoint[slot];
         return maximumDistance > distanceToDestination;
     }
 
+    /**
+     * @return Index of the last charging station canReachChargingStation() may be true for
+     */
+    private int lastReachableStationAlongHighway() {
+        double maximumDistance = fleet.battery[slot] / fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
+        double currentChargingStationDistance = fleet.route[slot].getStationOffsets()[fleet.currentChargingStationIndex[slot]];
+        // Rounding errors of canReachChargingStation() are left some slack
+        return fleet.route[slot].lastStationWithin(maximumDistance + currentChargingStationDistance - currentChargingStation().getDistanceFromHighway() - 1 + DISTANCE_EPSILON);
+    }
+
     private boolean canReachChargingStation(int chargingStationIndex) throws IndexOutOfBoundsException {
+        return canReachChargingStation(chargingStationIndex, fleet.battery[slot]);
+    }
+
+    private boolean canReachChargingStation(int chargingStationIndex, double battery) throws IndexOutOfBoundsException {
 
-        ChargingStation currentChargingStation = route.getChargingStations().get(currentChargingStationIndex);
-        double currentChargingStationDistance = route.getChargingStationDistances().get(currentChargingStationIndex);
-        ChargingStation nextChargingStation = route.getChargingStations().get(chargingStationIndex);
-        double nextChargingStationDistance = route.getChargingStationDistances().get(chargingStationIndex);
+        ChargingStation currentChargingStation = currentChargingStation();
+        double currentChargingStationDistance = fleet.route[slot].getStationOffsets()[fleet.currentChargingStationIndex[slot]];
+        ChargingStation nextChargingStation = fleet.route[slot].getChargingStations().get(chargingStationIndex);
+        double nextChargingStationDistance = fleet.route[slot].getStationOffsets()[chargingStationIndex];
 
         double distanceToNextChargingStation =
                 nextChargingStation.getDistanceFromHighway() +
                 nextChargingStationDistance - currentChargingStationDistance +
                 currentChargingStation.getDistanceFromHighway();
 
-        double maximumDistance = battery / carType.getDrivingEfficiency() * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
+        double maximumDistance = battery / fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) * 100 * (1 - DESTINATION_BATTERY_THRESHOLD);
 
         return maximumDistance > distanceToNextChargingStation + 1;
     }
 
     public double batteryUsedForDistance(double deltaDistance) {
-        return deltaDistance * carType.getDrivingEfficiency() / 100;
+        return deltaDistance * fleet.parameters.getDrivingEfficiency(fleet.carType[slot]) / 100;
+    }
+
+    /**
+     * @return Time steps the arrays of the car are behind the current time step because the engine is skipping them,
+     * see CarFleet.parkedSince
+     */
+    private long ticksBehind() {
+        if (fleet.parkedSince[slot] == -1)
+            return 0;
+        return Math.max(0, fleet.simulation.getPassedSeconds() / fleet.timeStep - fleet.parkedSince[slot]);
     }
 
     public double getDistanceFromHighway() {
-        return distanceFromHighway;
+        switch (getState()) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+            case OnWayToCharger:
+            case OnWayFromHighway:
+                return legPosition(fleet.legSteps[slot] + ticksBehind());
+            default:
+                return fleet.distanceFromHighway[slot];
+        }
     }
 
     public double getDrivenDistance() {
-        return drivenDistance;
+        if (getState() == State.OnHighway)
+            return legPosition(fleet.legSteps[slot] + ticksBehind());
+        return fleet.drivenDistance[slot];
+    }
+
+    /**
+     * @return Time steps until the car drives onto the next road, at least 1. Long.MAX_VALUE if it isn't on the
+     * highway or is on the last road
+     */
+    long ticksUntilRoadChange(long TIME_STEP) {
+        if (getState() != State.OnHighway)
+            return Long.MAX_VALUE;
+        // The same comparison as in getRoadIndex()
+        double[] rootRouteEnds = fleet.route[slot].getRootRouteEnds();
+        int nextRoad = 0;
+        while (nextRoad < rootRouteEnds.length && fleet.drivenDistance[slot] - rootRouteEnds[nextRoad] >= -DISTANCE_EPSILON)
+            nextRoad++;
+        if (nextRoad == rootRouteEnds.length)
+            return Long.MAX_VALUE;
+        double roadEnd = rootRouteEnds[nextRoad];
+        long legSteps = fleet.legSteps[slot];
+        double estimate = legSteps + (roadEnd - fleet.drivenDistance[slot]) / stepDistance();
+        return firstLegStep(legSteps, estimate, step -> legPosition(step) - roadEnd >= -DISTANCE_EPSILON) - legSteps;
+    }
+
+    /**
+     * @return Index of the road (root route) the car is on, or -1 if the car has left the highway at its destination
+     */
+    public int getRoadIndex() {
+        if (getState() == State.OnWayFromHighway || getState() == State.DestinationReached)
+            return -1;
+        // Driven distance only grows, so the root route is found by moving forward from the previous one
+        double[] rootRouteEnds = fleet.route[slot].getRootRouteEnds();
+        int rootRouteIndex = fleet.rootRouteIndex[slot];
+        while (rootRouteIndex < rootRouteEnds.length && fleet.drivenDistance[slot] - rootRouteEnds[rootRouteIndex] >= -DISTANCE_EPSILON)
+            rootRouteIndex++;
+        fleet.rootRouteIndex[slot] = rootRouteIndex;
+        return rootRouteIndex < rootRouteEnds.length ? fleet.route[slot].getRootRouteRoadIndex(rootRouteIndex) : -1;
+    }
+
+    public double getDrivingSpeed() {
+        return fleet.drivingSpeed[slot];
     }
 
     public CarType getCarType() {
-        return carType;
+        return fleet.carType[slot];
+    }
+
+    public double getCapacity() {
+        return fleet.parameters.getCapacity(fleet.carType[slot]);
+    }
+
+    public VehicleParameters getParameters() {
+        return fleet.parameters;
+    }
+
+    /**
+     * @return The station the car is heading to, at or leaving, or null if it has none
+     */
+    public ChargingStation getCurrentChargingStation() {
+        return fleet.currentChargingStationIndex[slot] == -1 ? null : currentChargingStation();
     }
 
     public Route getRoute() {
-        return route;
+        return fleet.route[slot];
     }
 
     public void setRoute(Route route) {
-        this.route = route;
-        distanceFromHighway = route.getRoutes().random.nextDouble() * route.getStartPoint().maxDistanceFromStartPoint;
-        destinationDistanceFromEndPoint = route.getRoutes().random.nextDouble() * route.getEndPoint().maxDistanceFromStartPoint;
-        logger.info(String.format("%s: %s: %s", this.toString(), "Route set", route.getName()));
+        fleet.route[slot] = route;
+        fleet.chargingStopPlan[slot] = null;
+        fleet.rootRouteIndex[slot] = 0;
+        SplittableRandom random = route.getRoutes().randomStreams.forCar(fleet.index[slot], RandomStreams.Purpose.RoadOffsets);
+        fleet.distanceFromHighway[slot] = random.nextDouble() * route.getStartPoint().maxDistanceFromStartPoint;
+        fleet.destinationDistanceFromEndPoint[slot] = random.nextDouble() * route.getEndPoint().maxDistanceFromStartPoint;
+        if (getState() == State.OnWayToHighway)
+            startLeg();
+        logger.info(() -> String.format("%s: %s: %s", this.toString(), "Route set", route.getName()));
     }
 
     public State getState() {
-        return state;
+        return STATES[fleet.state[slot]];
+    }
+
+    private void setState(State state) {
+        State previousState = getState();
+        fleet.state[slot] = (byte) state.index;
+        if (fleet.listener != null) {
+            long seconds = fleet.simulation.getPassedSeconds();
+            fleet.listener.carStateChanged(this, previousState, state, seconds);
+            if (state == State.DestinationReached || state == State.BatteryDepleted)
+                fleet.listener.carFinished(this, seconds);
+        }
     }
 
     public double getBattery() {
-        return battery;
+        switch (getState()) {
+            case Charging:
+                return batteryAfterChargingSteps(Math.min(fleet.chargingFullSteps[slot], fleet.chargingSteps[slot] + ticksBehind()));
+            case Waiting:
+            case BatteryDepleted:
+            case DestinationReached:
+                return fleet.battery[slot];
+            default:
+                return legBattery(fleet.legSteps[slot] + ticksBehind());
+        }
     }
 
+    /**
+     * @return Copy of the time spent in each state
+     */
     public long[] getStateTime() {
-        return stateTime;
+        int offset = slot * CarFleet.STATE_COUNT;
+        return Arrays.copyOfRange(fleet.stateTime, offset, offset + CarFleet.STATE_COUNT);
     }
 
     public int getIndex() {
-        return index;
+        return fleet.index[slot];
     }
 
     public void setCreationTime(int creationTime) {
-        this.creationTime = creationTime;
+        fleet.creationTime[slot] = creationTime;
     }
 
     public int getCreationTime() {
-        return creationTime;
+        return fleet.creationTime[slot];
     }
 
     public int getTimesCharged() {
-        return timesCharged;
+        return fleet.timesCharged[slot];
     }
 
     @Override
     public String toString() {
-        return String.format("%s %d (%s %.1f%%)", carType.toString(), index, state.toString(), battery /carType.getCapacity()*100);
+        return String.format("%s %d (%s %.1f%%)", fleet.carType[slot].toString(), fleet.index[slot], getState().toString(), fleet.battery[slot] /getCapacity()*100);
     }
 }
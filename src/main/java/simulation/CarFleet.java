@@ -0,0 +1,122 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * State of all cars of a simulation, stored as primitive arrays indexed by slot. Car objects are lightweight views
+ * into one slot each, so engines can go through the arrays in tight loops without chasing pointers.
+ * <p>
+ * The slot of a car is its position in the release order, so also its position in Simulation.cars. The release order
+ * is known before the cars are created, and each car is created straight into its slot.
+ */
+class CarFleet {
+
+    static final int STATE_COUNT = Car.State.values().length;
+
+    final Simulation simulation;
+    final VehicleParameters parameters;
+    final ChargingStopPlanner planner;
+    SimulationListener listener;    // Null if there are no listeners
+    long timeStep;
+    // Called with the slot of a parked waiting car that has been woken up. Null if the engine handles every waiting
+    // car on every time step
+    IntConsumer wakeUpHandler;
+    private final int size;
+
+    Car[] cars;
+    int[] index;
+    int[] slotOfIndex;
+    CarType[] carType;
+    Route[] route;
+    ChargingStopPlanner.Plan[] chargingStopPlan;    // Of the route, null until it is needed
+    ChargingStation.Charger[] currentCharger;
+    ChargingModel[] chargingModel;  // Of the current charger
+
+    double[] hunger; // In seconds since last eaten
+    double[] timeSinceLastShopped;
+    double[] timeSpentCharging;
+    double[] battery;
+    double[] chargingStartBattery;  // Battery level when the car got its current charger
+    int[] chargingSteps;    // Time steps charged at the current charger
+    int[] chargingFullSteps;    // Time steps after which the car is charged enough to leave the current charger
+    double[] drivenDistance;
+    double[] distanceFromHighway;
+    double[] drivingSpeed;
+    // A leg is the time a car spends in one driving state. Its position and battery level are computed from their
+    // values at the start of the leg and the amount of time steps driven, so they don't depend on how the time steps
+    // are split between tick() and skipTicks()
+    long[] legSteps;    // Time steps driven in the current leg
+    long[] legEndStep;  // Time step of the current leg on which the car changes its state or runs out of battery
+    double[] legStartDistance;  // drivenDistance on the highway, otherwise distanceFromHighway
+    double[] legStartBattery;
+    double[] destinationDistanceFromEndPoint;
+    int[] currentChargingStationIndex;
+    int[] nextChargingStationIndex;
+    int[] rootRouteIndex;   // Root route of the route the car was on when its road was last looked up
+    int[] creationTime;
+    int[] timesCharged;
+    byte[] state;   // Car.State.index
+    boolean[] continueDriving;
+    long[] waitingDeadline; // In seconds, when a waiting car next reconsiders its options if it isn't woken up earlier
+    boolean[] wokenUp;
+    // Last time step on which the car was handled if the engine is skipping its time steps, -1 if its arrays are up to date
+    long[] parkedSince;
+    long[] stateTime;   // In seconds, STATE_COUNT values per slot
+
+    CarFleet(Simulation simulation_, int carCount, VehicleParameters parameters_) {
+        simulation = simulation_;
+        parameters = parameters_;
+        planner = new ChargingStopPlanner(parameters);
+        timeStep = simulation.getTimeStep();
+        size = carCount;
+
+        cars = new Car[carCount];
+        index = new int[carCount];
+        slotOfIndex = new int[carCount];
+        carType = new CarType[carCount];
+        route = new Route[carCount];
+        chargingStopPlan = new ChargingStopPlanner.Plan[carCount];
+        currentCharger = new ChargingStation.Charger[carCount];
+        chargingModel = new ChargingModel[carCount];
+
+        hunger = new double[carCount];
+        timeSinceLastShopped = new double[carCount];
+        timeSpentCharging = new double[carCount];
+        battery = new double[carCount];
+        chargingStartBattery = new double[carCount];
+        chargingSteps = new int[carCount];
+        chargingFullSteps = new int[carCount];
+        drivenDistance = new double[carCount];
+        distanceFromHighway = new double[carCount];
+        drivingSpeed = new double[carCount];
+        legSteps = new long[carCount];
+        legEndStep = new long[carCount];
+        legStartDistance = new double[carCount];
+        legStartBattery = new double[carCount];
+        destinationDistanceFromEndPoint = new double[carCount];
+        currentChargingStationIndex = new int[carCount];
+        nextChargingStationIndex = new int[carCount];
+        rootRouteIndex = new int[carCount];
+        creationTime = new int[carCount];
+        timesCharged = new int[carCount];
+        state = new byte[carCount];
+        continueDriving = new boolean[carCount];
+        waitingDeadline = new long[carCount];
+        wokenUp = new boolean[carCount];
+        parkedSince = new long[carCount];
+        Arrays.fill(parkedSince, -1);
+        stateTime = new long[carCount * STATE_COUNT];
+    }
+
+    /**
+     * @param carIndex Car.getIndex() of a car of this fleet
+     */
+    Car getCar(int carIndex) {
+        return cars[slotOfIndex[carIndex]];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -41,19 +41,16 @@ public enum CarType {
     VOLKSWAGEN_E_UP1(371, 36.8, 14.3, 7.2, 50.0, new ArrayList<String>(Arrays.asList("Type2", "CCS"))),
     VOLVO_XC40(154, 78.0, 23.6, 11.0, 150.0, new ArrayList<String>(List.of("Type2","CCS")));
 
-    private int amount; // count
-    private double capacity; // kWh
-    private double maxChargingPowerAC; // kW
-    private double maxChargingPowerDC; // kW
-    private double drivingEfficiency; // kWh / 100km
-    private ArrayList<ChargingStation.ChargerType> supportedChargers;
-    private double winterChargingCoefficient = 0.5;
-    private double winterDrivingCoefficient = 0.5;
-    private static double batteryCapacityCoefficient = 1;
-    private static double chargingPowerCoefficient = 1;
-    private static double averageChargingPowerAC = -1;
-    private static double averageChargingPowerDC = -1;
-    private static double averageCapacity = -1;
+    // Nominal values. The effective values of a simulation run are in VehicleParameters
+    private final int amount; // count
+    private final double capacity; // kWh
+    private final double maxChargingPowerAC; // kW
+    private final double maxChargingPowerDC; // kW
+    private final double drivingEfficiency; // kWh / 100km
+    private final ArrayList<ChargingStation.ChargerType> supportedChargers;
+    private final int supportedChargerMask;
+    private final double winterChargingCoefficient = 0.5;
+    private final double winterDrivingCoefficient = 0.5;
 
     private CarType(int amount_, double capacity_, double drivingEfficiency_, double maxChargingPowerAC_, double maxChargingPowerDC_, ArrayList<String> supportedChargers_) {
         amount = amount_;
@@ -78,75 +75,45 @@ public enum CarType {
                     break;
             }
         }
-    }
-
-    public void itIsWinter() {
-        maxChargingPowerAC *= winterChargingCoefficient;
-        maxChargingPowerDC *= winterChargingCoefficient;
-        drivingEfficiency /= winterDrivingCoefficient;      // Because the greater the value of "drivingEfficiency", the worse the efficiency. What a stupid metric.
+        supportedChargerMask = ChargingStation.ChargerType.maskOf(supportedChargers);
     }
 
     public int getAmount() {
         return amount;
     }
 
-    public static void setBatteryCapacityCoefficient(double newBatteryCapacityCoefficient) {
-        CarType.batteryCapacityCoefficient = newBatteryCapacityCoefficient;
-    }
-
-    public static void setChargingPowerCoefficient(double newChargingPowerCoefficient) {
-        CarType.chargingPowerCoefficient = newChargingPowerCoefficient;
-    }
-
     public double getCapacity() {
-        return capacity*batteryCapacityCoefficient;
+        return capacity;
     }
 
     public double getMaxChargingPowerAC() {
-        return maxChargingPowerAC * chargingPowerCoefficient;
+        return maxChargingPowerAC;
     }
 
     public double getMaxChargingPowerDC() {
-        return maxChargingPowerDC * chargingPowerCoefficient;
+        return maxChargingPowerDC;
     }
 
     public double getDrivingEfficiency() {
         return drivingEfficiency;
     }
 
-    private static void calculateAverages() {
-        double sumAC = 0, sumDC = 0, sumCapacity = 0;
-        int weightTotal = 0;
-        for (CarType carType : CarType.values()) {
-            sumAC += carType.amount * carType.getMaxChargingPowerAC();
-            sumDC += carType.amount * carType.getMaxChargingPowerDC();
-            sumCapacity += carType.amount * carType.getCapacity();
-            weightTotal += carType.amount;
-        }
-        averageChargingPowerAC = sumAC / weightTotal;
-        averageChargingPowerDC = sumDC / weightTotal;
-        averageCapacity = sumCapacity / weightTotal;
+    public double getWinterChargingCoefficient() {
+        return winterChargingCoefficient;
     }
 
-    public static double getAverageCapacity() {
-        if (averageCapacity == -1)
-            calculateAverages();
-        return averageCapacity;
-    }
-
-    public static double getAverageChargingPowerAC() {
-        if (averageChargingPowerAC == -1)
-            calculateAverages();
-        return averageChargingPowerAC;
-    }
-
-    public static double getAverageChargingPowerDC() {
-        if (averageChargingPowerDC == -1)
-            calculateAverages();
-        return averageChargingPowerDC;
+    public double getWinterDrivingCoefficient() {
+        return winterDrivingCoefficient;
     }
 
     public ArrayList<ChargingStation.ChargerType> getSupportedChargers() {
         return supportedChargers;
     }
+
+    /**
+     * @return Supported charger types as a bitmask, see ChargingStation.ChargerType.mask()
+     */
+    public int getSupportedChargerMask() {
+        return supportedChargerMask;
+    }
 }
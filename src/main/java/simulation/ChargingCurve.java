@@ -0,0 +1,145 @@
+package simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Charging power of a car model as a function of the state of charge, given as points between which the power
+ * changes linearly. The curves are read from a resource file with one point per line: car type;state of charge
+ * (%);power (kW). Car types without a curve in the file use the default curve.
+ * <p>
+ * The power of a curve read from the file is the power of the car at a charger that isn't a limit, and it is limited
+ * by the maximum AC or DC charging power of the car and the power of the charger. The default curve is relative to
+ * that limit: 40% of it at 0%, rising to all of it at 5%, and falling from all of it at 25% to 10% of it at 100%.
+ */
+public final class ChargingCurve {
+
+    private static final String CURVE_FILE = "/Latauskayrat.csv";
+
+    public static final ChargingCurve DEFAULT = new ChargingCurve(new double[]{0, 0.05, 0.25, 1}, new double[]{0.4, 1, 1, 0.1}, true);
+
+    private static Map<CarType, ChargingCurve> curves;
+
+    private final double[] statesOfCharge;
+    private final double[] powers;  // kW, or shares of the maximum charging power if the curve is relative
+    private final boolean relative;
+
+    /**
+     * @param statesOfCharge_ Increasing states of charge from 0 to 1
+     * @param powers_ Positive charging power at each state of charge in kW
+     */
+    public ChargingCurve(double[] statesOfCharge_, double[] powers_) {
+        this(statesOfCharge_, powers_, false);
+    }
+
+    private ChargingCurve(double[] statesOfCharge_, double[] powers_, boolean relative_) {
+        if (statesOfCharge_.length < 2 || statesOfCharge_.length != powers_.length)
+            throw new IllegalArgumentException("Charging curve needs a power for at least two states of charge");
+        if (statesOfCharge_[0] != 0 || statesOfCharge_[statesOfCharge_.length - 1] != 1)
+            throw new IllegalArgumentException("Charging curve has to go from 0% to 100%");
+        for (int i = 0; i < statesOfCharge_.length; i++) {
+            if (i > 0 && statesOfCharge_[i] <= statesOfCharge_[i - 1])
+                throw new IllegalArgumentException("States of charge of a charging curve have to be increasing");
+            if (!(powers_[i] > 0))
+                throw new IllegalArgumentException("Charging power has to be positive");
+        }
+        statesOfCharge = statesOfCharge_.clone();
+        powers = powers_.clone();
+        relative = relative_;
+    }
+
+    /**
+     * @return The curve of the car type in the curve file, or the default curve. The file is read on the first call.
+     */
+    public static synchronized ChargingCurve getCurve(CarType carType) {
+        if (curves == null)
+            curves = readCurves(CURVE_FILE);
+        return curves.getOrDefault(carType, DEFAULT);
+    }
+
+    private static Map<CarType, ChargingCurve> readCurves(String path) {
+        EnumMap<CarType, ArrayList<double[]>> points = new EnumMap<>(CarType.class);
+
+        try {
+            InputStream in = ChargingCurve.class.getResourceAsStream(path);
+            if (in == null) {
+                Logger.getGlobal().warning("Charging curve file not found, using the default curve for every car");
+                return new EnumMap<>(CarType.class);
+            }
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            br.readLine();
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.length() <= 0) break;
+                String[] data = line.split(";");
+                CarType carType = CarType.valueOf(data[0]);
+                double stateOfCharge = Double.parseDouble(data[1]) / 100;
+                double power = Double.parseDouble(data[2]);
+                points.computeIfAbsent(carType, key -> new ArrayList<>()).add(new double[]{stateOfCharge, power});
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Charging curve file is in wrong format");
+        }
+
+        EnumMap<CarType, ChargingCurve> result = new EnumMap<>(CarType.class);
+        for (Map.Entry<CarType, ArrayList<double[]>> entry : points.entrySet()) {
+            ArrayList<double[]> curvePoints = entry.getValue();
+            curvePoints.sort((a, b) -> Double.compare(a[0], b[0]));
+            double[] statesOfCharge = new double[curvePoints.size()];
+            double[] powers = new double[curvePoints.size()];
+            for (int i = 0; i < curvePoints.size(); i++) {
+                statesOfCharge[i] = curvePoints.get(i)[0];
+                powers[i] = curvePoints.get(i)[1];
+            }
+            result.put(entry.getKey(), new ChargingCurve(statesOfCharge, powers));
+        }
+        return result;
+    }
+
+    public boolean isRelative() {
+        return relative;
+    }
+
+    /**
+     * Builds the lookup table of charging with the curve.
+     *
+     * @param capacity Battery capacity in kWh
+     * @param coefficient Multiplies the power of a curve that isn't relative, for example in winter
+     * @param maxPower Maximum charging power in kW, limited by both the car and the charger
+     */
+    ChargingModel compile(double capacity, double coefficient, double maxPower) {
+        ArrayList<Double> levels = new ArrayList<>();
+        ArrayList<Double> limitedPowers = new ArrayList<>();
+        for (int i = 0; i < statesOfCharge.length; i++) {
+            double power = relative ? powers[i] * maxPower : powers[i] * coefficient;
+            if (i > 0 && !relative) {
+                // The limit adds a point where the curve crosses it
+                double previousPower = powers[i - 1] * coefficient;
+                if ((previousPower - maxPower) * (power - maxPower) < 0) {
+                    double stateOfCharge = statesOfCharge[i - 1] + (maxPower - previousPower) / (power - previousPower) * (statesOfCharge[i] - statesOfCharge[i - 1]);
+                    if (stateOfCharge > statesOfCharge[i - 1] && stateOfCharge < statesOfCharge[i]) {
+                        levels.add(stateOfCharge * capacity);
+                        limitedPowers.add(maxPower);
+                    }
+                }
+            }
+            levels.add(statesOfCharge[i] * capacity);
+            limitedPowers.add(Math.min(power, maxPower));
+        }
+        return new ChargingModel(
+                levels.stream().mapToDouble(Double::doubleValue).toArray(),
+                limitedPowers.stream().mapToDouble(Double::doubleValue).toArray()
+        );
+    }
+}
@@ -0,0 +1,93 @@
+package simulation;
+
+/**
+ * Battery level of a car charging at a charger, compiled from a ChargingCurve. The charging power is piecewise linear
+ * in the battery level, so on each piece the battery level follows db/dt = p + s (b - b0), which has a closed-form
+ * solution. The charging time from the first point to each point is computed once, so finding the battery level after
+ * a charging time or the time to reach a battery level only takes a lookup in the table and the solution on one piece.
+ * The results therefore don't depend on the length of the time step.
+ */
+final class ChargingModel {
+
+    private final double[] levels;  // Battery levels of the points, kWh
+    private final double[] powers;  // Charging power at the points, kW
+    private final double[] slopes;  // Of the piece starting at each point, kW / kWh. The last piece continues beyond the last point
+    private final double[] hours;   // Charging time from the first point to each point
+
+    /**
+     * @param levels_ Increasing battery levels in kWh
+     * @param powers_ Positive charging power at each battery level in kW
+     */
+    ChargingModel(double[] levels_, double[] powers_) {
+        if (levels_.length < 2 || levels_.length != powers_.length)
+            throw new IllegalArgumentException("Charging model needs a power for at least two battery levels");
+        int n = levels_.length;
+        levels = levels_.clone();
+        powers = powers_.clone();
+        slopes = new double[n - 1];
+        hours = new double[n];
+        for (int i = 0; i < n - 1; i++) {
+            if (levels[i + 1] <= levels[i])
+                throw new IllegalArgumentException("Battery levels of a charging model have to be increasing");
+            if (!(powers[i] > 0) || !(powers[i + 1] > 0))
+                throw new IllegalArgumentException("Charging power has to be positive");
+            slopes[i] = (powers[i + 1] - powers[i]) / (levels[i + 1] - levels[i]);
+            hours[i + 1] = hours[i] + hoursBetween(levels[i], levels[i + 1], powers[i], slopes[i]);
+        }
+    }
+
+    /**
+     * @param battery Battery level at the start in kWh
+     * @param seconds Charging time
+     * @return Battery level after charging for the given time, not limited by the capacity
+     */
+    double batteryAfter(double battery, double seconds) {
+        double target = hoursTo(battery) + seconds / 3600d;
+        int piece = lastAtMost(hours, target);
+        double elapsed = target - hours[piece];
+        double slope = slopes[piece];
+        return levels[piece] + (slope == 0 ? powers[piece] * elapsed : powers[piece] * Math.expm1(slope * elapsed) / slope);
+    }
+
+    /**
+     * @return Charging time in seconds from the first battery level to the second, or 0 if it is already reached
+     */
+    double secondsToReach(double battery, double target) {
+        if (battery >= target)
+            return 0;
+        return (hoursTo(target) - hoursTo(battery)) * 3600;
+    }
+
+    /**
+     * @return Charging time from the first point to the battery level, infinite if the power runs out before it
+     */
+    private double hoursTo(double battery) {
+        int piece = lastAtMost(levels, battery);
+        return hours[piece] + hoursBetween(levels[piece], battery, powers[piece], slopes[piece]);
+    }
+
+    private static double hoursBetween(double from, double to, double power, double slope) {
+        if (slope == 0)
+            return (to - from) / power;
+        double powerAtEnd = power + slope * (to - from);
+        if (powerAtEnd <= 0)
+            return Double.POSITIVE_INFINITY;
+        return Math.log(powerAtEnd / power) / slope;
+    }
+
+    /**
+     * @return Index of the piece starting at the last point with a value at most the given value, or the first piece
+     */
+    private int lastAtMost(double[] values, double value) {
+        int low = 0;
+        int high = slopes.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (values[middle] <= value)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+}
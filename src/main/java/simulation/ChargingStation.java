@@ -1,6 +1,7 @@
 package simulation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -11,13 +12,27 @@ public class ChargingStation {
         CCS,
         Tesla,
         CHAdeMO,
-        Tyomaapistoke
+        Tyomaapistoke;
+
+        private static final ChargerType[] TYPES = values();
+
+        public int mask() {
+            return 1 << ordinal();
+        }
+
+        public static int maskOf(List<ChargerType> types) {
+            int mask = 0;
+            for (ChargerType type : types)
+                mask |= type.mask();
+            return mask;
+        }
     }
 
     public class Charger implements Comparable {
         private final double power;
         private boolean inUse;
         private ChargerType type;
+        private int position;   // In the chargers of the station
 
         public Charger(double power_, ChargerType type_) {
             power = power_;
@@ -34,7 +49,10 @@ public class ChargingStation {
         }
 
         public void setInUse(boolean inUse_) {
+            if (inUse == inUse_)
+                return;
             inUse = inUse_;
+            setFree(this, !inUse);
         }
 
         public ChargerType getType() { return type; }
@@ -62,9 +80,15 @@ public class ChargingStation {
     private final double distanceFromHighway;
     // Chargers are sorted by charging power
     private final ArrayList<Charger> chargers;
+    // For each charger type, the positions in chargers of the chargers that are not in use, one bit per charger. As
+    // chargers are sorted, the lowest set bit is the most powerful free charger of the type
+    private final long[][] freeChargers;
+    private int chargerTypeMask;
+    private int freeChargerTypeMask;
     private final boolean hasShop, hasFood, customerExclusive;
     private final String name;
-    private final ThreadLocal<List<Integer>> queue;
+    private StationQueue queue;
+    private int id = -1;    // Position in Routes.getChargingStation(), -1 until the routes are generated
 
     public ChargingStation(String name_, double distance_, double distanceFromHighway_, boolean[] amenities) {
         name = name_;
@@ -74,35 +98,92 @@ public class ChargingStation {
         hasFood = amenities[1];
         customerExclusive = amenities[2];
         chargers = new ArrayList<>();
-        queue = ThreadLocal.withInitial(ArrayList::new);
+        freeChargers = new long[ChargerType.TYPES.length][1];
+        queue = new StationQueue(new StationQueue.Links(0));
     }
 
     public void addCharger(double power, ChargerType type) {
-        chargers.add(new Charger(power, type));
+        Charger charger = new Charger(power, type);
+        charger.position = chargers.size();
+        chargers.add(charger);
+        chargerTypeMask |= type.mask();
+        setFree(charger, true);
+    }
+
+    private void setFree(Charger charger, boolean free) {
+        int type = charger.type.ordinal();
+        int word = charger.position >>> 6;
+        if (word >= freeChargers[type].length)
+            freeChargers[type] = Arrays.copyOf(freeChargers[type], Math.max(word + 1, 2 * freeChargers[type].length));
+        if (free) {
+            freeChargers[type][word] |= 1L << charger.position;
+            freeChargerTypeMask |= charger.type.mask();
+        } else {
+            freeChargers[type][word] &= ~(1L << charger.position);
+            if (firstFreeCharger(type) == -1)
+                freeChargerTypeMask &= ~charger.type.mask();
+        }
+    }
+
+    private int firstFreeCharger(int type) {
+        long[] free = freeChargers[type];
+        for (int word = 0; word < free.length; word++) {
+            if (free[word] != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(free[word]);
+        }
+        return -1;
     }
 
     public Charger getAvailableCharger(ArrayList<ChargerType> chargerTypes) {
-        for (Charger charger : chargers) {
-            if (chargerTypes.contains(charger.getType()) && !charger.isInUse())
-                return charger;
+        return getAvailableCharger(ChargerType.maskOf(chargerTypes));
+    }
+
+    /**
+     * @param chargerTypeMask Accepted charger types, see ChargerType.mask()
+     * @return The most powerful free charger of the accepted types, or null if all of them are in use
+     */
+    public Charger getAvailableCharger(int chargerTypeMask) {
+        int types = chargerTypeMask & freeChargerTypeMask;
+        int best = -1;
+        while (types != 0) {
+            int type = Integer.numberOfTrailingZeros(types);
+            types &= types - 1;
+            int position = firstFreeCharger(type);
+            if (best == -1 || position < best)
+                best = position;
         }
-        return null;
+        return best != -1 ? chargers.get(best) : null;
+    }
+
+    /**
+     * Empties the queue and makes it share the links between the cars with the other stations of a simulation.
+     */
+    void resetQueue(StationQueue.Links links) {
+        queue = new StationQueue(links);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id_) {
+        id = id_;
     }
 
     public int getQueueLength() {
-        return queue.get().size();
+        return queue.size();
     }
 
     public int getNextInQueue() {
-        return queue.get().size() > 0 ? queue.get().get(0) : -1;
+        return queue.peek();
     }
 
     public void addToQueue(int carIndex) {
-        queue.get().add(carIndex);
+        queue.add(carIndex);
     }
 
     public void removeFromQueue(int carIndex) {
-        queue.get().remove(Integer.valueOf(carIndex));
+        queue.remove(carIndex);
     }
 
     public double getDistance() {
@@ -130,15 +211,27 @@ public class ChargingStation {
     }
 
     public boolean hasChargerType(ArrayList<ChargerType> chargerTypes) {
-        for (Charger charger : chargers) {
-            if (chargerTypes.contains(charger.getType()))
-                return true;
-        }
-        return false;
+        return hasChargerType(ChargerType.maskOf(chargerTypes));
+    }
+
+    /**
+     * @param chargerTypeMask Accepted charger types, see ChargerType.mask()
+     */
+    public boolean hasChargerType(int chargerTypeMask) {
+        return (chargerTypeMask & this.chargerTypeMask) != 0;
     }
 
     public void sortChargers() {
         Collections.sort(chargers);
+        for (long[] free : freeChargers)
+            Arrays.fill(free, 0);
+        freeChargerTypeMask = 0;
+        for (int i = 0; i < chargers.size(); i++) {
+            Charger charger = chargers.get(i);
+            charger.position = i;
+            if (!charger.inUse)
+                setFree(charger, true);
+        }
     }
 
     @Override
@@ -0,0 +1,123 @@
+package simulation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parts of the preference points of the charging stations of a route that only depend on the route and the car type.
+ * They are computed once per route and car type and kept in a bounded cache, so a car choosing a station only adds up
+ * the parts that depend on the car itself and on the queue of the station.
+ */
+final class ChargingStopPlanner {
+
+    private static final int MAX_PLANS = 4096;
+    private static final double HUNGER_TIME_TAX = 1800; // In seconds
+
+    private final VehicleParameters parameters;
+    private final LinkedHashMap<Key, Plan> plans;
+
+    private static final class Key {
+        final Route route;
+        final CarType carType;
+
+        Key(Route route_, CarType carType_) {
+            route = route_;
+            carType = carType_;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return route == key.route && carType == key.carType;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(route) * 31 + carType.ordinal();
+        }
+    }
+
+    /**
+     * Stations of one route for one car type.
+     */
+    static final class Plan {
+        private final int[] nextSupportedStation;   // First station at or after each one with a supported charger
+        private final double[] chargingTime;    // Charging a full battery at the most powerful charger, hours
+        private final double[] queueTimePerCar; // Charging an average battery at the station, hours
+        private final double[] queueDivisor;    // Twice the amount of chargers
+        private final double[] hungerTax;   // Time tax of a hungry car at a station without food or a shop
+
+        private Plan(List<ChargingStation> stations, CarType carType, VehicleParameters parameters) {
+            int n = stations.size();
+            nextSupportedStation = new int[n + 1];
+            chargingTime = new double[n];
+            queueTimePerCar = new double[n];
+            queueDivisor = new double[n];
+            hungerTax = new double[n];
+
+            nextSupportedStation[n] = n;
+            for (int i = n - 1; i >= 0; i--) {
+                ChargingStation station = stations.get(i);
+                nextSupportedStation[i] = station.hasChargerType(carType.getSupportedChargerMask()) ? i : nextSupportedStation[i + 1];
+
+                ChargingStation.Charger charger = station.getChargers().get(0);
+                boolean isDC =
+                        charger.getType() == ChargingStation.ChargerType.CHAdeMO ||
+                        charger.getType() == ChargingStation.ChargerType.CCS ||
+                        charger.getType() == ChargingStation.ChargerType.Tesla;
+                double personalChargerPower = Math.min(charger.getPower(), isDC ? parameters.getMaxChargingPowerDC(carType) : parameters.getMaxChargingPowerAC(carType));
+                double averageChargerPower = Math.min(charger.getPower(), isDC ? parameters.getAverageChargingPowerDC() : parameters.getAverageChargingPowerAC());
+                chargingTime[i] = parameters.getCapacity(carType) / personalChargerPower;
+                queueTimePerCar[i] = parameters.getAverageCapacity() / averageChargerPower;
+                queueDivisor[i] = 2 * station.getChargers().size();
+                hungerTax[i] = !station.isHasFood() && !station.isHasShop() ? HUNGER_TIME_TAX : 0;
+            }
+        }
+
+        boolean isSupported(int station) {
+            return nextSupportedStation[station] == station;
+        }
+
+        /**
+         * @return The station itself if it has a charger the car supports, otherwise the next one that has, or the
+         * amount of stations if there is none
+         */
+        int nextSupportedStation(int station) {
+            return nextSupportedStation[station];
+        }
+
+        /**
+         * @param queueLength Current queue length of the station
+         * @param hungry Whether the car needs a station with food or a shop
+         * @param distanceFromOptimal Distance from the point where the car would optimally charge to the station
+         * @param maxDistance Distance the car can drive
+         * @return Preference points of the station, the smaller the better
+         */
+        double preferencePoints(int station, int queueLength, boolean hungry, double distanceFromOptimal, double maxDistance) {
+            double estimatedWaitingTime = chargingTime[station] + queueTimePerCar[station] * queueLength / queueDivisor[station];
+            double timeTax = hungry ? hungerTax[station] : 0;
+            timeTax += Math.min(distanceFromOptimal * distanceFromOptimal / (maxDistance * maxDistance) * 45000, 4050);
+            return estimatedWaitingTime + timeTax;
+        }
+    }
+
+    ChargingStopPlanner(VehicleParameters parameters_) {
+        parameters = parameters_;
+        plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Plan> eldest) {
+                return size() > MAX_PLANS;
+            }
+        };
+    }
+
+    /**
+     * @return Plan of the route for the car type, computed on the first call or if it has been dropped from the cache
+     */
+    synchronized Plan getPlan(Route route, CarType carType) {
+        return plans.computeIfAbsent(new Key(route, carType), key -> new Plan(route.getChargingStations(), carType, parameters));
+    }
+}
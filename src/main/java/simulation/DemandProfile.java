@@ -0,0 +1,38 @@
+package simulation;
+
+/**
+ * Distribution of the departure times of the cars over a simulation.
+ */
+public interface DemandProfile {
+
+    /**
+     * @return Share of all departures per second at the given time
+     */
+    double density(double seconds);
+
+    /**
+     * @return Time in seconds after which no more cars depart
+     */
+    double getEnd();
+
+    default double getMean() {
+        double sum = 0;
+        double weightSum = 0;
+        for (double seconds = 0; seconds <= getEnd(); seconds += 60) {
+            sum += density(seconds) * seconds;
+            weightSum += density(seconds);
+        }
+        return weightSum > 0 ? sum / weightSum : 0;
+    }
+
+    default double getStandardDeviation() {
+        double mean = getMean();
+        double sum = 0;
+        double weightSum = 0;
+        for (double seconds = 0; seconds <= getEnd(); seconds += 60) {
+            sum += density(seconds) * (seconds - mean) * (seconds - mean);
+            weightSum += density(seconds);
+        }
+        return weightSum > 0 ? Math.sqrt(sum / weightSum) : 0;
+    }
+}
@@ -0,0 +1,44 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Departure times of the cars of a simulation, calculated once before the simulation starts.
+ * <p>
+ * The share of departures is integrated over the time steps starting from half a car, and a car departs whenever
+ * the sum reaches the next whole car. This places the i:th departure on the first time step at which the
+ * cumulative distribution reaches (i + 0.5) / N.
+ */
+public class DepartureSchedule {
+
+    private final int[] departureTimes;    // In seconds, sorted
+
+    private DepartureSchedule(int[] departureTimes_) {
+        departureTimes = departureTimes_;
+    }
+
+    public static DepartureSchedule create(DemandProfile profile, int carCount, long TIME_STEP) {
+        int[] departureTimes = new int[carCount];
+        int departures = 0;
+        double cumulativeDistributionCounter = 0.5;
+        for (long seconds = 0; departures < carCount && seconds <= profile.getEnd(); seconds += TIME_STEP) {
+            cumulativeDistributionCounter += profile.density(seconds)*(double)carCount*(double)TIME_STEP;
+            while (cumulativeDistributionCounter >= 1 && departures < carCount) {
+                departureTimes[departures++] = (int) seconds;
+                cumulativeDistributionCounter -= 1;
+            }
+        }
+        return new DepartureSchedule(Arrays.copyOf(departureTimes, departures));
+    }
+
+    /**
+     * @return Amount of departures. Can be less than the amount of cars if the last cars never depart
+     */
+    public int size() {
+        return departureTimes.length;
+    }
+
+    public int getDepartureTime(int departure) {
+        return departureTimes[departure];
+    }
+}
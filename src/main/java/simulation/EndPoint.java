@@ -12,16 +12,18 @@ public enum EndPoint {
     Rovaniemi(new ArrayList<String>(Arrays.asList("KeRo", "RoUt")), 5, 30),
     Utsjoki(new ArrayList<String>(Arrays.asList("RoUt")), 6, 30);
 
-    private final ArrayList<Route> connectedRoutes;
     private final ArrayList<String> connectedRouteIDs;
     public final int index;
     public final double maxDistanceFromStartPoint;
 
+    /**
+     * Routes are looked up from the given instance on every call. Caching them here would
+     * share the first instance's charging stations with every later simulation.
+     */
     public ArrayList<Route> getConnectedRoutes(Routes routes) {
-        if (connectedRoutes.size() == 0) {
-            for (String id : connectedRouteIDs) {
-                connectedRoutes.add(routes.routes.get(id));
-            }
+        ArrayList<Route> connectedRoutes = new ArrayList<>();
+        for (String id : connectedRouteIDs) {
+            connectedRoutes.add(routes.routes.get(id));
         }
         return connectedRoutes;
     }
@@ -30,6 +32,5 @@ public enum EndPoint {
         maxDistanceFromStartPoint = mDFSP;
         connectedRouteIDs = routeIndexes;
         index = index_;
-        connectedRoutes = new ArrayList<>();
     }
 }
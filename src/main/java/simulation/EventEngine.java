@@ -0,0 +1,114 @@
+package simulation;
+
+import java.util.ArrayList;
+
+/**
+ * Discrete event engine. Instead of moving every car on every time step, a car is only handled on the time steps on
+ * which its state may change, for example when it reaches the highway, passes the exit of its charging station or
+ * arrives at its destination. The time steps in between are skipped with Car.skipTicks(), which moves the car the
+ * same way as ticking it, so the results are the same as those of the tick engine. Waiting cars are handled when they are woken up or due to reconsider, and cars
+ * that are charging when they leave their charger.
+ * <p>
+ * Cars handled on the same time step are handled in the same order as in the tick engine. The statistics are kept up
+ * to date with StateCounters whenever a car is handled, so no time step requires going through all cars.
+ */
+class EventEngine {
+
+    private final Simulation simulation;
+    private final long TIME_STEP;
+    private final EventQueue events;
+
+    private final long[] lastHandledTick;    // CarFleet.parkedSince, indexed by the position of the car in Simulation.cars
+    private final long[] scheduledTick;     // Tick of the event of the car, other events of the car are outdated
+    private final StateCounters counters;
+
+    private long currentTick;
+    private int currentPosition;    // Of the car being handled
+
+    EventEngine(Simulation simulation_) {
+        simulation = simulation_;
+        TIME_STEP = simulation.getTimeStep();
+        int carCount = simulation.carsInDepartureOrder.size();
+        events = new EventQueue(carCount);
+        lastHandledTick = simulation.fleet.parkedSince;
+        scheduledTick = new long[carCount];
+        counters = new StateCounters(carCount, simulation.getRoutes().routeKeys.size());
+    }
+
+    void run() {
+        ArrayList<Car> cars = simulation.cars;
+        long tick = 0;
+        addCars(0, -1);
+        simulation.fleet.wakeUpHandler = this::wakeUp;
+
+        while (simulation.shouldContinue(counters.getFinishedCars() == cars.size())) {
+            while (!events.isEmpty() && events.peekTick() == tick) {
+                handle(events.poll(), tick);
+            }
+
+            counters.addSnapshot(simulation);
+
+            int firstNewCar = cars.size();
+            simulation.endTick();
+            addCars(firstNewCar, tick);
+            tick++;
+        }
+
+        simulation.fleet.wakeUpHandler = null;
+
+        // Finished and waiting cars keep collecting time in their state until the end
+        for (int position = 0; position < cars.size(); position++) {
+            long lastTick = lastHandledTick[position];
+            lastHandledTick[position] = -1;
+            cars.get(position).skipTicks(tick - 1 - lastTick, TIME_STEP);
+        }
+    }
+
+    private void addCars(int firstNewCar, long tick) {
+        int carCount = simulation.cars.size();
+        for (int position = firstNewCar; position < carCount; position++) {
+            lastHandledTick[position] = tick;
+            schedule(tick + 1, position);
+        }
+    }
+
+    private void schedule(long tick, int position) {
+        scheduledTick[position] = tick;
+        events.add(tick, position);
+    }
+
+    /**
+     * Handles a woken up waiting car on the current time step if the tick engine would handle it after the current car,
+     * otherwise on the next one.
+     */
+    private void wakeUp(int position) {
+        long tick = position > currentPosition ? currentTick : currentTick + 1;
+        if (tick < scheduledTick[position])
+            schedule(tick, position);
+    }
+
+    private void handle(int position, long tick) {
+        if (scheduledTick[position] != tick)
+            return;
+        currentTick = tick;
+        currentPosition = position;
+        Car car = simulation.cars.get(position);
+        long lastTick = lastHandledTick[position];
+        lastHandledTick[position] = -1;
+        car.skipTicks(tick - lastTick - 1, TIME_STEP);
+        car.tick(TIME_STEP);
+        lastHandledTick[position] = tick;
+        counters.update(position, car);
+
+        if (car.getState() == Car.State.DestinationReached || car.getState() == Car.State.BatteryDepleted) {
+            scheduledTick[position] = Long.MAX_VALUE;
+            return;
+        }
+        if (car.getState() == Car.State.Waiting || car.getState() == Car.State.Charging) {
+            schedule(tick + car.ticksUntilStateChange(TIME_STEP), position);
+            return;
+        }
+
+        schedule(tick + Math.min(car.ticksUntilStateChange(TIME_STEP), car.ticksUntilRoadChange(TIME_STEP)), position);
+    }
+}
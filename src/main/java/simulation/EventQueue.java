@@ -0,0 +1,71 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of car events ordered by time step and, within a time step, by the position of the car in
+ * Simulation.cars. The events are stored as primitive longs in a binary heap.
+ */
+class EventQueue {
+
+    private long[] heap;
+    private int size;
+
+    EventQueue(int initialCapacity) {
+        heap = new long[Math.max(initialCapacity, 16)];
+        size = 0;
+    }
+
+    void add(long tick, int carPosition) {
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        long event = (tick << 32) | carPosition;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= event)
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = event;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long peekTick() {
+        return heap[0] >>> 32;
+    }
+
+    int peekPosition() {
+        return (int) heap[0];
+    }
+
+    /**
+     * @return Position of the car of the earliest event
+     */
+    int poll() {
+        long first = heap[0];
+        long last = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && heap[child + 1] < heap[child])
+                child++;
+            if (last <= heap[child])
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return (int) first;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,180 @@
+package simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tick engine working directly on the arrays of the CarFleet. Cars that are driving and don't reach a point where
+ * their state changes are moved in a tight loop with Car.driveSteps(), the same way Car.tick() moves them, other cars
+ * are ticked through their Car view as in the tick engine. Cars are handled in the same order as in the tick engine,
+ * so the results are the same.
+ * <p>
+ * Waiting cars are parked outside of the active cars until they are woken up or due to reconsider, and charging
+ * cars until they leave their charger. Parked cars are merged back into the order of the active cars on the time step
+ * they are handled.
+ * <p>
+ * With more than one thread, each time step has two phases. First the driving cars that don't reach a point where
+ * their state changes are moved in parallel. Moving them only touches the arrays of the car itself. Then the other cars
+ * are ticked one at a time in the order of the tick engine. Only these cars take chargers, queue at stations, look at
+ * the queues or wake up other cars. The results are therefore the same for any amount of threads. There is no
+ * parallel arbitration of chargers per station: taking chargers, waiting and state changes stay on one thread, as a
+ * car choosing a station looks at the queues of the other stations.
+ */
+class FleetEngine {
+
+    private static final Car.State[] STATES = Car.State.values();
+
+    private final Simulation simulation;
+    private final CarFleet fleet;
+    private final long TIME_STEP;
+
+    private final ParkedCars parkedCars;
+    private final int threads;
+    private final boolean[] moved;  // Indexed like the active cars, whether the car was moved in the parallel phase
+    private long tick;
+    private int currentSlot;    // Of the car being handled
+
+    FleetEngine(Simulation simulation_) {
+        simulation = simulation_;
+        fleet = simulation.fleet;
+        TIME_STEP = simulation.getTimeStep();
+        parkedCars = new ParkedCars(fleet);
+        threads = simulation.getThreads();
+        moved = threads > 1 ? new boolean[fleet.size()] : null;
+    }
+
+    /**
+     * Moves a range of the active cars without state changes, splitting it between the threads of the pool.
+     */
+    private class MoveCars extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int MIN_CARS_PER_TASK = 1024;
+
+        private final ActiveSet activeCars;
+        private final int from;
+        private final int to;
+
+        MoveCars(ActiveSet activeCars_, int from_, int to_) {
+            activeCars = activeCars_;
+            from = from_;
+            to = to_;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_CARS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    moved[i] = moveWithoutStateChange(activeCars.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new MoveCars(activeCars, from, middle), new MoveCars(activeCars, middle, to));
+        }
+    }
+
+    void run() {
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            run(pool);
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+    }
+
+    private void run(ForkJoinPool pool) {
+        ActiveSet activeCars = new ActiveSet(fleet.size());
+        activeCars.addNewCars(simulation.cars.size());
+        StateCounters counters = new StateCounters(fleet.size(), simulation.getRoutes().routeKeys.size());
+        fleet.timeStep = TIME_STEP;
+        fleet.wakeUpHandler = this::wakeUp;
+        tick = 0;
+
+        while (simulation.shouldContinue(activeCars.allCarsHaveFinished())) {
+            // Slots are in the same order as Simulation.cars, so positions are slots
+            int activeCarCount = activeCars.beginTick();
+            // Too few cars aren't worth splitting between threads
+            boolean isParallel = pool != null && activeCarCount > MoveCars.MIN_CARS_PER_TASK;
+            if (isParallel)
+                pool.invoke(new MoveCars(activeCars, 0, activeCarCount));
+            int i = 0;
+            while (true) {
+                int activeSlot = i < activeCarCount ? activeCars.get(i) : Integer.MAX_VALUE;
+                int parkedSlot = parkedCars.next(tick);
+                if (activeSlot == Integer.MAX_VALUE && parkedSlot == Integer.MAX_VALUE)
+                    break;
+
+                int slot;
+                Car car;
+                if (parkedSlot < activeSlot) {
+                    slot = parkedSlot;
+                    currentSlot = slot;
+                    car = parkedCars.unpark(tick, TIME_STEP);
+                    car.tick(TIME_STEP);
+                } else {
+                    slot = activeSlot;
+                    car = fleet.cars[slot];
+                    currentSlot = slot;
+                    boolean isMoved = isParallel ? moved[i] : moveWithoutStateChange(slot);
+                    i++;
+                    if (!isMoved)
+                        car.tick(TIME_STEP);
+                }
+                counters.update(slot, car);
+
+                if (ActiveSet.isFinished(car.getState()))
+                    activeCars.finish(slot, tick);
+                else if (car.getState() == Car.State.Waiting || car.getState() == Car.State.Charging)
+                    parkedCars.park(slot, tick, tick + car.ticksUntilStateChange(TIME_STEP));
+                else
+                    activeCars.keep(slot);
+            }
+            activeCars.endTick();
+            counters.addSnapshot(simulation);
+
+            simulation.endTick();
+            activeCars.addNewCars(simulation.cars.size());
+            tick++;
+        }
+        fleet.wakeUpHandler = null;
+        activeCars.creditFinishedCars(simulation.cars, tick - 1, TIME_STEP);
+        parkedCars.creditParkedCars(tick - 1, TIME_STEP);
+    }
+
+    /**
+     * Handles a woken up car on the current time step if the tick engine would handle it after the current car,
+     * otherwise on the next one.
+     */
+    private void wakeUp(int slot) {
+        parkedCars.wakeUp(slot, slot > currentSlot ? tick : tick + 1);
+    }
+
+    /**
+     * Moves the car one time step forward if it is driving and its state doesn't change on this time step. Moves the
+     * car with Car.driveSteps() like Car.tick() does.
+     *
+     * @return False if the car wasn't moved and has to be ticked through its Car view
+     */
+    private boolean moveWithoutStateChange(int slot) {
+        Car.State state = STATES[fleet.state[slot]];
+        switch (state) {
+            case OnWayToHighway:
+            case OnWayFromCharger:
+            case OnHighway:
+            case OnWayToCharger:
+            case OnWayFromHighway:
+                if (fleet.legSteps[slot] + 1 >= fleet.legEndStep[slot])
+                    return false;
+                break;
+            default:
+                return false;
+        }
+        fleet.cars[slot].driveSteps(1);
+
+        fleet.hunger[slot] += TIME_STEP;
+        fleet.timeSinceLastShopped[slot] += TIME_STEP;
+        fleet.stateTime[slot * CarFleet.STATE_COUNT + state.index] += TIME_STEP;
+        return true;
+    }
+}
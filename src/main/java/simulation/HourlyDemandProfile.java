@@ -0,0 +1,80 @@
+package simulation;
+
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+ * Departures following an empirical profile with a constant share of departures within each hour.
+ */
+public class HourlyDemandProfile implements DemandProfile {
+
+    private final double[] hourlyDensity;
+
+    /**
+     * @param hourlyWeights Relative amount of departures in each hour, starting from the beginning of the simulation
+     */
+    public HourlyDemandProfile(double[] hourlyWeights) {
+        double sum = 0;
+        for (double weight : hourlyWeights) {
+            if (weight < 0)
+                throw new IllegalArgumentException("Hourly weight can't be negative");
+            sum += weight;
+        }
+        if (sum <= 0)
+            throw new IllegalArgumentException("Hourly weights have to add up to more than zero");
+
+        hourlyDensity = new double[hourlyWeights.length];
+        for (int i = 0; i < hourlyWeights.length; i++) {
+            hourlyDensity[i] = hourlyWeights[i] / sum / 3600d;
+        }
+    }
+
+    @Override
+    public double density(double seconds) {
+        int hour = (int) Math.floor(seconds / 3600d);
+        return hour >= 0 && hour < hourlyDensity.length ? hourlyDensity[hour] : 0;
+    }
+
+    @Override
+    public double getEnd() {
+        return hourlyDensity.length * 3600d;
+    }
+
+    /**
+     * Reads the profile from a file with a header line and one hour per line: hour;weight
+     * Hours are counted from the beginning of the simulation, missing hours have no departures.
+     *
+     * @param path Resource path or file path
+     */
+    public static HourlyDemandProfile readProfile(String path) {
+        ArrayList<Double> weights = new ArrayList<>();
+
+        try {
+            InputStream in = HourlyDemandProfile.class.getResourceAsStream(path);
+            if (in == null)
+                in = new FileInputStream(path);
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            br.readLine();
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.length() <= 0) break;
+                String[] data = line.split(";");
+                int hour = Integer.parseInt(data[0]);
+                if (hour < 0)
+                    throw new IllegalArgumentException("Demand profile file has a negative hour");
+                while (weights.size() <= hour)
+                    weights.add(0d);
+                weights.set(hour, Double.parseDouble(data[1]));
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Demand profile file is in wrong format");
+        }
+
+        return new HourlyDemandProfile(weights.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+}
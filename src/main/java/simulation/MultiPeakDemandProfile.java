@@ -0,0 +1,81 @@
+package simulation;
+
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+ * Departures following a weighted sum of normal distributions, for example separate morning and afternoon peaks.
+ */
+public class MultiPeakDemandProfile implements DemandProfile {
+
+    private final ArrayList<NormalDemandProfile> peaks;
+    private final ArrayList<Double> weights;
+    private double weightSum;
+
+    public MultiPeakDemandProfile() {
+        peaks = new ArrayList<>();
+        weights = new ArrayList<>();
+        weightSum = 0;
+    }
+
+    public MultiPeakDemandProfile addPeak(int mean, int standardDeviation, double weight) {
+        if (weight < 0)
+            throw new IllegalArgumentException("Weight of a peak can't be negative");
+        peaks.add(new NormalDemandProfile(mean, standardDeviation));
+        weights.add(weight);
+        weightSum += weight;
+        return this;
+    }
+
+    @Override
+    public double density(double seconds) {
+        double density = 0;
+        for (int i = 0; i < peaks.size(); i++) {
+            density += weights.get(i) * peaks.get(i).density(seconds);
+        }
+        return density / weightSum;
+    }
+
+    @Override
+    public double getEnd() {
+        double end = 0;
+        for (NormalDemandProfile peak : peaks) {
+            end = Math.max(end, peak.getEnd());
+        }
+        return end;
+    }
+
+    /**
+     * Reads peaks from a file with a header line and one peak per line: mean (s);standard deviation (s);weight
+     *
+     * @param path Resource path or file path
+     */
+    public static MultiPeakDemandProfile readPeaks(String path) {
+        MultiPeakDemandProfile profile = new MultiPeakDemandProfile();
+
+        try {
+            InputStream in = MultiPeakDemandProfile.class.getResourceAsStream(path);
+            if (in == null)
+                in = new FileInputStream(path);
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            br.readLine();
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.length() <= 0) break;
+                String[] data = line.split(";");
+                profile.addPeak(Integer.parseInt(data[0]), Integer.parseInt(data[1]), Double.parseDouble(data[2]));
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Demand profile file is in wrong format");
+        }
+
+        if (profile.peaks.isEmpty() || profile.weightSum <= 0)
+            throw new IllegalArgumentException("Demand profile file has no peaks");
+        return profile;
+    }
+}
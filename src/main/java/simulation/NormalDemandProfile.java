@@ -0,0 +1,39 @@
+package simulation;
+
+/**
+ * Departures following a normal distribution.
+ */
+public class NormalDemandProfile implements DemandProfile {
+
+    private final int mean;
+    private final int standardDeviation;
+
+    public NormalDemandProfile(int mean_, int standardDeviation_) {
+        mean = mean_;
+        standardDeviation = standardDeviation_;
+    }
+
+    @Override
+    public double density(double seconds) {
+        return (Math.pow(Math.E, -1/2d * Math.pow((seconds - mean)/(double) standardDeviation,2)))
+                / (standardDeviation*Math.sqrt(2*Math.PI));
+    }
+
+    /**
+     * The density underflows to zero about 38.6 standard deviations from the mean
+     */
+    @Override
+    public double getEnd() {
+        return mean + 40d * standardDeviation;
+    }
+
+    @Override
+    public double getMean() {
+        return mean;
+    }
+
+    @Override
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+}
@@ -0,0 +1,194 @@
+package simulation;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Relative amount of trips between each pair of end points. A trip is sampled with one random number in constant time.
+ * <p>
+ * Besides the matrix used all day, a separate matrix can be given for any hour, counted from the beginning of the
+ * simulation like in HourlyDemandProfile. Hours without their own matrix use the all-day one.
+ */
+public class OriginDestinationDemand {
+
+    private static final int END_POINT_COUNT = EndPoint.values().length;
+
+    private final Matrix allDay;
+    private final ArrayList<Matrix> hourly;    // Null for hours without their own matrix
+
+    private static class Matrix {
+        final AliasTable table;
+        final int[] pairs;  // start * END_POINT_COUNT + end of each entry of the table
+
+        Matrix(double[][] weights) {
+            int count = 0;
+            for (int start = 0; start < END_POINT_COUNT; start++) {
+                for (int end = 0; end < END_POINT_COUNT; end++) {
+                    if (start != end && weights[start][end] > 0)
+                        count++;
+                }
+            }
+            if (count == 0)
+                throw new IllegalArgumentException("Origin-destination matrix has no trips");
+
+            // Pairs without trips are left out, so they can't be sampled even because of rounding errors
+            pairs = new int[count];
+            double[] pairWeights = new double[count];
+            int i = 0;
+            for (int start = 0; start < END_POINT_COUNT; start++) {
+                for (int end = 0; end < END_POINT_COUNT; end++) {
+                    if (start != end && weights[start][end] > 0) {
+                        pairs[i] = start * END_POINT_COUNT + end;
+                        pairWeights[i] = weights[start][end];
+                        i++;
+                    }
+                }
+            }
+            table = new AliasTable(pairWeights);
+        }
+    }
+
+    /**
+     * @param weights Relative amount of trips from each end point to each end point, indexed by EndPoint.index
+     */
+    public OriginDestinationDemand(double[][] weights) {
+        this(weights, new ArrayList<>());
+    }
+
+    /**
+     * @param weights Matrix used for hours without their own matrix
+     * @param hourlyWeights Matrix of each hour from the beginning of the simulation, or null to use the all-day one
+     */
+    public OriginDestinationDemand(double[][] weights, List<double[][]> hourlyWeights) {
+        allDay = new Matrix(checkSize(weights));
+        hourly = new ArrayList<>();
+        for (double[][] hourWeights : hourlyWeights) {
+            hourly.add(hourWeights != null ? new Matrix(checkSize(hourWeights)) : null);
+        }
+    }
+
+    private static double[][] checkSize(double[][] weights) {
+        if (weights.length != END_POINT_COUNT)
+            throw new IllegalArgumentException("Origin-destination matrix has to have a row for each end point");
+        for (double[] row : weights) {
+            if (row.length != END_POINT_COUNT)
+                throw new IllegalArgumentException("Origin-destination matrix has to have a column for each end point");
+        }
+        return weights;
+    }
+
+    /**
+     * Trips of the traffic model of the road network: the start point is picked by the traffic on the roads next to it,
+     * and the end point by the product of the traffic on the roads in between. Half of the trips go the other way.
+     */
+    public static OriginDestinationDemand fromTrafficData(RoadNetwork network) {
+        Map<String, Double> trafficData = network.getTrafficData();
+        List<String> roadKeys = network.getRoadKeys();
+        List<Double> endPointWeights = network.getEndPointWeights();
+
+        double[][] weights = new double[END_POINT_COUNT][END_POINT_COUNT];
+        for (int start = 0; start < END_POINT_COUNT; start++) {
+            double[] endWeights = new double[END_POINT_COUNT];
+            double sumOfWeights = 0;
+            for (int end = 0; end < END_POINT_COUNT; end++) {
+                if (end == start)
+                    continue;
+                double weight = 1;
+                for (int road = Math.min(start, end); road < Math.max(start, end); road++) {
+                    weight *= trafficData.get(roadKeys.get(road));
+                }
+                endWeights[end] = weight;
+                sumOfWeights += weight;
+            }
+            for (int end = 0; end < END_POINT_COUNT; end++) {
+                double trips = endPointWeights.get(start) * endWeights[end] / sumOfWeights / 2;
+                weights[start][end] += trips;
+                weights[end][start] += trips;
+            }
+        }
+        return new OriginDestinationDemand(weights);
+    }
+
+    /**
+     * Reads the matrix from a file with a header line and one pair of end points per line: start;end;weight[;hour]
+     * End points are given by their names. Lines with an hour make up the matrix of that hour. If there are only lines
+     * with an hour, the sum of the hourly matrices is used for the other hours.
+     *
+     * @param path Resource path or file path
+     */
+    public static OriginDestinationDemand readDemand(String path) {
+        double[][] weights = new double[END_POINT_COUNT][END_POINT_COUNT];
+        ArrayList<double[][]> hourlyWeights = new ArrayList<>();
+
+        try {
+            InputStream in = OriginDestinationDemand.class.getResourceAsStream(path);
+            if (in == null)
+                in = new FileInputStream(path);
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            br.readLine();
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.length() <= 0) break;
+                String[] data = line.split(";");
+                EndPoint start = EndPoint.valueOf(data[0]);
+                EndPoint end = EndPoint.valueOf(data[1]);
+                double weight = Double.parseDouble(data[2]);
+                if (weight < 0)
+                    throw new IllegalArgumentException("Origin-destination file has a negative weight");
+                double[][] matrix = weights;
+                if (data.length > 3) {
+                    int hour = Integer.parseInt(data[3]);
+                    if (hour < 0)
+                        throw new IllegalArgumentException("Origin-destination file has a negative hour");
+                    while (hourlyWeights.size() <= hour)
+                        hourlyWeights.add(null);
+                    if (hourlyWeights.get(hour) == null)
+                        hourlyWeights.set(hour, new double[END_POINT_COUNT][END_POINT_COUNT]);
+                    matrix = hourlyWeights.get(hour);
+                }
+                matrix[start.index][end.index] += weight;
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Origin-destination file is in wrong format");
+        }
+
+        boolean hasAllDayTrips = false;
+        for (double[] row : weights) {
+            for (double weight : row) {
+                hasAllDayTrips |= weight > 0;
+            }
+        }
+        // Without lines for the whole day, hours without their own matrix use the sum of the hourly matrices
+        if (!hasAllDayTrips) {
+            for (double[][] matrix : hourlyWeights) {
+                if (matrix == null)
+                    continue;
+                for (int start = 0; start < END_POINT_COUNT; start++) {
+                    for (int end = 0; end < END_POINT_COUNT; end++) {
+                        weights[start][end] += matrix[start][end];
+                    }
+                }
+            }
+        }
+
+        return new OriginDestinationDemand(weights, hourlyWeights);
+    }
+
+    /**
+     * @param u Uniformly distributed number in [0, 1)
+     * @param seconds Departure time from the beginning of the simulation, negative to use the all-day matrix
+     * @return start * EndPoint count + end
+     */
+    int samplePair(double u, long seconds) {
+        long hour = Math.floorDiv(seconds, 3600);
+        Matrix matrix = hour >= 0 && hour < hourly.size() && hourly.get((int) hour) != null ? hourly.get((int) hour) : allDay;
+        return matrix.pairs[matrix.table.sample(u)];
+    }
+}
@@ -0,0 +1,83 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Cars an engine handles only on a given time step instead of on every one, kept outside of its ActiveSet. The state
+ * of a parked car is known not to change before that time step, so the time steps in between are skipped with
+ * Car.skipTicks() when the car is handled. Parked cars are merged back into the order of the active cars on the time
+ * step they are handled: slots are positions in Simulation.cars.
+ * <p>
+ * While a car is parked, CarFleet.parkedSince tells the Car view how far its arrays are behind.
+ */
+class ParkedCars {
+
+    private final CarFleet fleet;
+    private final EventQueue queue;
+    private final long[] parkedUntil;   // Tick on which a parked car is handled next, -1 if the car isn't parked
+
+    ParkedCars(CarFleet fleet_) {
+        fleet = fleet_;
+        queue = new EventQueue(16);
+        parkedUntil = new long[fleet.size()];
+        Arrays.fill(parkedUntil, -1);
+    }
+
+    /**
+     * @return Slot of the next parked car to handle on the time step, or Integer.MAX_VALUE if there is none
+     */
+    int next(long tick) {
+        while (!queue.isEmpty() && queue.peekTick() == tick) {
+            int slot = queue.peekPosition();
+            if (parkedUntil[slot] == tick)
+                return slot;
+            queue.poll();   // Outdated, the car has been woken up earlier
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes the car returned by next() and brings it up to the time step before the current one.
+     */
+    Car unpark(long tick, long TIME_STEP) {
+        int slot = queue.poll();
+        Car car = fleet.cars[slot];
+        long parkedSince = fleet.parkedSince[slot];
+        parkedUntil[slot] = -1;
+        fleet.parkedSince[slot] = -1;
+        car.skipTicks(tick - parkedSince - 1, TIME_STEP);
+        return car;
+    }
+
+    void park(int slot, long tick, long untilTick) {
+        parkedUntil[slot] = untilTick;
+        fleet.parkedSince[slot] = tick;
+        queue.add(untilTick, slot);
+    }
+
+    /**
+     * Handles the car on an earlier time step than it was parked until.
+     */
+    void wakeUp(int slot, long tick) {
+        if (parkedUntil[slot] == -1 || tick >= parkedUntil[slot])
+            return;
+        parkedUntil[slot] = tick;
+        queue.add(tick, slot);
+    }
+
+    /**
+     * Parked cars keep collecting time in their state until the end of the simulation.
+     *
+     * @param lastTick Last time step of the simulation
+     */
+    void creditParkedCars(long lastTick, long TIME_STEP) {
+        for (int slot = 0; slot < parkedUntil.length; slot++) {
+            if (parkedUntil[slot] != -1) {
+                long parkedSince = fleet.parkedSince[slot];
+                parkedUntil[slot] = -1;
+                fleet.parkedSince[slot] = -1;
+                fleet.cars[slot].skipTicks(lastTick - parkedSince, TIME_STEP);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package simulation;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Random numbers of a simulation run, split into independent streams. A stream is derived from the seed of the run,
+ * what the numbers are used for and, for the streams of a car, the index of the car. The numbers a car draws therefore
+ * don't depend on the other cars or on the order in which the cars are handled, so cars can be created in parallel,
+ * and two runs with the same seed draw the same numbers for the same car (common random numbers).
+ */
+public final class RandomStreams {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    public enum Purpose {
+        CarTypes,       // Order in which the car types are created
+        CarOrder,       // Departure order of the cars
+        Route,          // End points of the route of a car
+        RoadOffsets     // Distances of a car from the highway at its start and end points
+    }
+
+    private final long seed;
+
+    public RandomStreams(long seed_) {
+        seed = seed_;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return Stream used by the run as a whole. Each call starts the stream from the beginning
+     */
+    public SplittableRandom forRun(Purpose purpose) {
+        return new SplittableRandom(mix(seed + GOLDEN_GAMMA * (purpose.ordinal() + 1)));
+    }
+
+    /**
+     * @param carIndex Car.getIndex()
+     * @return Stream of the car. Each call starts the stream from the beginning
+     */
+    public SplittableRandom forCar(int carIndex, Purpose purpose) {
+        long runKey = mix(seed + GOLDEN_GAMMA * (purpose.ordinal() + 1));
+        return new SplittableRandom(mix(runKey + GOLDEN_GAMMA * ((long) carIndex + 1)));
+    }
+
+    /**
+     * Shuffles the list like Collections.shuffle().
+     */
+    public static <T> void shuffle(List<T> list, SplittableRandom random) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            list.set(i, list.set(j, list.get(i)));
+        }
+    }
+
+    /**
+     * Shuffles the array with the same swaps as shuffle() does a list of the same size.
+     */
+    public static void shuffle(int[] array, SplittableRandom random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swapped = array[i];
+            array[i] = array[j];
+            array[j] = swapped;
+        }
+    }
+
+    /**
+     * Finalizer of SplitMix64. Spreads keys differing in a few bits over the whole range of seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
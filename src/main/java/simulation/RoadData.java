@@ -3,9 +3,44 @@ package simulation;
 import java.io.*;
 import java.util.ArrayList;
 
+/**
+ * Road length and charging stations of one road as read from its file. Immutable, so one instance can be shared by
+ * every simulation. Each simulation creates its own charging stations with createChargingStations().
+ */
 public class RoadData {
+
+    private static class ChargerData {
+        final int power;
+        final ChargingStation.ChargerType type;
+        final int amount;
+
+        ChargerData(int power_, ChargingStation.ChargerType type_, int amount_) {
+            power = power_;
+            type = type_;
+            amount = amount_;
+        }
+    }
+
+    private static class ChargingStationData {
+        final String name;
+        final double distance;
+        final double distanceFromHighway;
+        final boolean hasShop, hasFood, customerExclusive;
+        final ArrayList<ChargerData> chargers = new ArrayList<>();
+
+        ChargingStationData(String name_, double distance_, double distanceFromHighway_, boolean[] amenities) {
+            name = name_;
+            distance = distance_;
+            distanceFromHighway = distanceFromHighway_;
+            hasShop = amenities[0];
+            hasFood = amenities[1];
+            customerExclusive = amenities[2];
+        }
+    }
+
     private double length;
-    private ArrayList<ChargingStation> chargingStations;
+    private final ArrayList<ChargingStationData> chargingStations;
+
     private RoadData() {
         length = 0;
         chargingStations = new ArrayList<>();
@@ -15,11 +50,32 @@ public class RoadData {
         return length;
     }
 
-    public ArrayList<ChargingStation> getChargingStations() {
-        return chargingStations;
+    /**
+     * @param chargerAmountCoefficient The amount of chargers of each type at each station is multiplied by this
+     * @return New charging stations with all chargers free and empty queues
+     */
+    public ArrayList<ChargingStation> createChargingStations(double chargerAmountCoefficient) {
+        ArrayList<ChargingStation> stations = new ArrayList<>(chargingStations.size());
+        for (ChargingStationData data : chargingStations) {
+            ChargingStation station = new ChargingStation(
+                    data.name,
+                    data.distance,
+                    data.distanceFromHighway,
+                    new boolean[]{data.hasShop, data.hasFood, data.customerExclusive}
+            );
+            for (ChargerData charger : data.chargers) {
+                int chargerAmount = (int) Math.round((double) charger.amount * chargerAmountCoefficient);
+                for (int i = 0; i < chargerAmount; i++) {
+                    station.addCharger(charger.power, charger.type);
+                }
+            }
+            station.sortChargers();
+            stations.add(station);
+        }
+        return stations;
     }
 
-    public static RoadData readChargingStations(String path, double chargerAmountCoefficient) {
+    public static RoadData readChargingStations(String path) {
         RoadData roadData = new RoadData();
 
         try {
@@ -27,7 +83,7 @@ public class RoadData {
             BufferedReader br = new BufferedReader(new InputStreamReader(in));
             int lineNumber = 0;
             String lastAppearingName = "";
-            ChargingStation lastStation = null;
+            ChargingStationData lastStation = null;
 
             String[] distanceData = br.readLine().split(";");
             roadData.length = Double.parseDouble(distanceData[1]);
@@ -42,7 +98,7 @@ public class RoadData {
                 data = line.split(";");
                 if (!lastAppearingName.equals(data[0])) {   // First of a station
                     if (lineNumber != 0) roadData.chargingStations.add(lastStation);
-                    lastStation = new ChargingStation(
+                    lastStation = new ChargingStationData(
                             data[0],
                             Double.parseDouble(data[1]),
                             Double.parseDouble(data[2]),
@@ -74,12 +130,8 @@ public class RoadData {
 
                 assert lastStation != null;
 
-                int chargerAmount = (int) Math.round((double) Integer.parseInt(data[4]) * chargerAmountCoefficient);
-                for (int i = 0; i < chargerAmount; i++) {
-                    lastStation.addCharger(Integer.parseInt(data[3]), type);
-                }
+                lastStation.chargers.add(new ChargerData(Integer.parseInt(data[3]), type, Integer.parseInt(data[4])));
 
-                lastStation.sortChargers();
                 lastAppearingName = data[0];
                 lineNumber++;
             }
@@ -0,0 +1,150 @@
+package simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Roads, charging station data and traffic data read from the resource files. These never change during a simulation,
+ * so the files are only parsed once and the same network is used by every Routes instance. Routes.generateRoutes()
+ * creates new charging stations from the network for each simulation.
+ */
+public final class RoadNetwork {
+
+    private static final String[] ROAD_KEYS = {"HeLa", "LaJy", "JyOu", "OuKe", "KeRo", "RoUt"};
+    private static final String[] ROAD_FILES = {
+            "/He-La-latauspisteet.csv",
+            "/La-Jy-latauspisteet.csv",
+            "/Jy-Ou-latauspisteet.csv",
+            "/Ou-Ke-latauspisteet.csv",
+            "/Ke-Ro-latauspisteet.csv",
+            "/Ro-Ut-latauspisteet.csv"
+    };
+    private static final String TRAFFIC_FILE = "/Liikennemaarat.csv";
+
+    private static RoadNetwork defaultNetwork;
+
+    private final List<String> roadKeys;
+    private final HashMap<String, RoadData> roads;
+    private final HashMap<String, EndPoint[]> roadEndPoints;
+    private final Map<String, Double> trafficData;
+    private final List<Double> endPointWeights;
+    private final OriginDestinationDemand trafficDemand;
+
+    private RoadNetwork() {
+        Logger.getGlobal().config("Reading road network...");
+        roadKeys = List.of(ROAD_KEYS);
+        roads = new HashMap<>();
+        roadEndPoints = new HashMap<>();
+        EndPoint[] endPoints = EndPoint.values();
+        for (int i = 0; i < ROAD_KEYS.length; i++) {
+            roads.put(ROAD_KEYS[i], RoadData.readChargingStations(ROAD_FILES[i]));
+            roadEndPoints.put(ROAD_KEYS[i], new EndPoint[]{endPoints[i], endPoints[i + 1]});
+        }
+        trafficData = Collections.unmodifiableMap(readTrafficData(TRAFFIC_FILE));
+        endPointWeights = Collections.unmodifiableList(calculateEndpointWeights());
+        trafficDemand = OriginDestinationDemand.fromTrafficData(this);
+    }
+
+    /**
+     * @return The network read from the resource files. Read on the first call.
+     */
+    public static synchronized RoadNetwork getDefault() {
+        if (defaultNetwork == null)
+            defaultNetwork = new RoadNetwork();
+        return defaultNetwork;
+    }
+
+    private static HashMap<String, Double> readTrafficData(String path) {
+
+        HashMap<String, Double> trafficData = new HashMap<>();
+
+        try {
+            InputStream in = RoadData.class.getResourceAsStream(path);
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+
+            br.readLine();
+
+            String[] data = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.length() <= 0) break;
+                data = line.split(";");
+                String routeId = data[0];
+                double routeTraffic = Double.parseDouble(data[2]);
+                trafficData.put(routeId, routeTraffic);
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ArrayIndexOutOfBoundsException | NullPointerException | NumberFormatException e) {
+            e.printStackTrace();
+            throw new IllegalArgumentException("Charger file is in wrong format");
+        }
+
+        return trafficData;
+    }
+
+    private ArrayList<Double> calculateEndpointWeights() {
+
+        if (trafficData.size() <= 0)
+            return new ArrayList<>();
+
+        ArrayList<Double> weights = new ArrayList<>();
+        double sum = 0;
+        weights.add(trafficData.get(roadKeys.get(0)));
+        sum += weights.get(0);
+
+        for (int i = 1; i < trafficData.size(); i++) {
+            weights.add(trafficData.get(roadKeys.get(i)) + trafficData.get(roadKeys.get(i-1)));
+            sum += weights.get(i);
+        }
+
+        weights.add(trafficData.get(roadKeys.get(roadKeys.size()-1)));
+        sum += weights.get(weights.size()-1);
+
+        final double finalSum = sum;
+        weights = weights.stream().map(weight -> weight / finalSum).collect(Collectors.toCollection(ArrayList::new));
+
+        return weights;
+    }
+
+    public List<String> getRoadKeys() {
+        return roadKeys;
+    }
+
+    public RoadData getRoad(String key) {
+        return roads.get(key);
+    }
+
+    public EndPoint getStartPoint(String key) {
+        return roadEndPoints.get(key)[0];
+    }
+
+    public EndPoint getEndPoint(String key) {
+        return roadEndPoints.get(key)[1];
+    }
+
+    public Map<String, Double> getTrafficData() {
+        return trafficData;
+    }
+
+    public List<Double> getEndPointWeights() {
+        return endPointWeights;
+    }
+
+    /**
+     * @return Trips between the end points according to the traffic data
+     */
+    public OriginDestinationDemand getTrafficDemand() {
+        return trafficDemand;
+    }
+}
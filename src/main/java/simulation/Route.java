@@ -1,7 +1,6 @@
 package simulation;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class Route {
     private final double length;
@@ -19,6 +18,17 @@ public class Route {
      */
     private final ArrayList<Route> rootRoutes;
 
+    // Distance from the start of this route to the end of each root route, and the road index of each root route
+    private final double[] rootRouteEnds;
+    private final int[] rootRouteRoadIndices;
+
+    // Distance from the start of this route to each charging station along the highway, and including the distance
+    // from the highway. Offsets never decrease, the distances including the way from the highway may
+    private double[] stationOffsets;
+    private double[] stationReach;
+    private double[] stationReachTree;  // Maximum of stationReach over each node of a segment tree
+    private int stationReachTreeLeaves;
+
     public Route(Routes routes_, String name_, double length_, ArrayList<ChargingStation> chargingStations_, EndPoint startPoint_, EndPoint endPoint_) {
         routes = routes_;
         rootRoutes = null;
@@ -32,6 +42,10 @@ public class Route {
         for (ChargingStation station : chargingStations) {
             chargingStationDistances.add(station.getDistance());
         }
+
+        rootRouteEnds = calculateRootRouteEnds();
+        rootRouteRoadIndices = calculateRootRouteRoadIndices();
+        calculateStationGeometry();
     }
 
     public Route(Routes routes_, String name_, double length_, ArrayList<ChargingStation> chargingStations_, EndPoint startPoint_, EndPoint endPoint_, ArrayList<Route> rootRoutes_) {
@@ -47,6 +61,10 @@ public class Route {
         for (ChargingStation station : chargingStations) {
             chargingStationDistances.add(station.getDistance());
         }
+
+        rootRouteEnds = calculateRootRouteEnds();
+        rootRouteRoadIndices = calculateRootRouteRoadIndices();
+        calculateStationGeometry();
     }
 
     /**
@@ -90,36 +108,66 @@ public class Route {
         length = sumOfLengths;
         endPoint = previousEndPoint;
         name = startPoint.toString() + " - " + endPoint.toString();
+
+        rootRouteEnds = calculateRootRouteEnds();
+        rootRouteRoadIndices = calculateRootRouteRoadIndices();
+        calculateStationGeometry();
     }
 
-    public Route getFlippedRoute(Routes routes) {
+    private void calculateStationGeometry() {
+        int n = chargingStations.size();
+        stationOffsets = new double[n];
+        stationReach = new double[n];
+        for (int i = 0; i < n; i++) {
+            stationOffsets[i] = chargingStationDistances.get(i);
+            stationReach[i] = chargingStationDistances.get(i) + chargingStations.get(i).getDistanceFromHighway();
+        }
+
+        stationReachTreeLeaves = 1;
+        while (stationReachTreeLeaves < n)
+            stationReachTreeLeaves *= 2;
+        stationReachTree = new double[2 * stationReachTreeLeaves];
+        Arrays.fill(stationReachTree, Double.NEGATIVE_INFINITY);
+        System.arraycopy(stationReach, 0, stationReachTree, stationReachTreeLeaves, n);
+        for (int node = stationReachTreeLeaves - 1; node >= 1; node--)
+            stationReachTree[node] = Math.max(stationReachTree[2 * node], stationReachTree[2 * node + 1]);
+    }
 
-        Route route = this;
-        ArrayList<ChargingStation> newChargingStations = route.chargingStations.stream()
-            .map(ChargingStation::createNew)
-            .collect(Collectors.toCollection(ArrayList::new));
+    private double[] calculateRootRouteEnds() {
+        if (rootRoutes == null)
+            return new double[] {length};
+        double[] ends = new double[rootRoutes.size()];
+        double sumOfLengths = 0;
+        for (int i = 0; i < ends.length; i++) {
+            sumOfLengths += rootRoutes.get(i).length;
+            ends[i] = sumOfLengths;
+        }
+        return ends;
+    }
 
-        ArrayList<Route> newRootRoutes = route.getRootRoutes();
-        Collections.reverse(newChargingStations);
-        if (newRootRoutes != null)
+    private int[] calculateRootRouteRoadIndices() {
+        if (rootRoutes == null)
+            return new int[] {Math.min(startPoint.index, endPoint.index)};
+        int[] roadIndices = new int[rootRoutes.size()];
+        for (int i = 0; i < roadIndices.length; i++) {
+            Route rootRoute = rootRoutes.get(i);
+            roadIndices[i] = Math.min(rootRoute.startPoint.index, rootRoute.endPoint.index);
+        }
+        return roadIndices;
+    }
+
+    /**
+     * @return The same route in the opposite direction. The charging stations are shared with this route
+     */
+    public Route getFlippedRoute(Routes routes) {
+        ArrayList<Route> newRootRoutes;
+        if (rootRoutes != null) {
+            newRootRoutes = new ArrayList<>(rootRoutes);
             Collections.reverse(newRootRoutes);
-        Route newRoute = new Route(
-                routes,
-                route.getEndPoint().toString() + " - " + route.getStartPoint().toString(),
-                route.length,
-                newChargingStations,
-                route.endPoint,
-                route.startPoint,
-                newRootRoutes
-        );
-        ArrayList<Double> newChargingStationDistances = new ArrayList<>();
-        for (int i = 0; i < route.chargingStationDistances.size(); i++) {
-            newChargingStationDistances.add(route.length - route.chargingStationDistances.get(i));
+        } else {
+            newRootRoutes = new ArrayList<>(List.of(this));
         }
-        Collections.reverse(newChargingStationDistances);
-        newRoute.chargingStationDistances.clear();
-        newRoute.chargingStationDistances.addAll(newChargingStationDistances);
-        return newRoute;
+        return new Route(routes, newRootRoutes, endPoint);
     }
 
     public EndPoint getOppositeEndPoint(EndPoint oppositeEndPoint) {
@@ -153,10 +201,74 @@ public class Route {
         return chargingStationDistances;
     }
 
+    /**
+     * @return Distance from the start of this route to each charging station along the highway. Don't modify
+     */
+    public double[] getStationOffsets() {
+        return stationOffsets;
+    }
+
+    /**
+     * @return Distance from the start of this route to each charging station, including the way from the highway to
+     * the station. Don't modify
+     */
+    public double[] getStationReach() {
+        return stationReach;
+    }
+
+    /**
+     * @return Index of the last charging station at most the given distance along the highway from the start of this
+     * route, or -1 if there is none
+     */
+    public int lastStationWithin(double distance) {
+        int low = 0, high = stationOffsets.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (stationOffsets[middle] <= distance)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low - 1;
+    }
+
+    /**
+     * @return Index of the first charging station from the given index on whose reach is further than the given
+     * distance, or the amount of charging stations if there is none
+     */
+    public int firstStationBeyond(int from, double distance) {
+        int index = firstStationBeyond(1, 0, stationReachTreeLeaves, from, distance);
+        return index != -1 ? index : stationReach.length;
+    }
+
+    private int firstStationBeyond(int node, int nodeStart, int nodeEnd, int from, double distance) {
+        if (nodeEnd <= from || stationReachTree[node] <= distance)
+            return -1;
+        if (nodeEnd - nodeStart == 1)
+            return nodeStart;
+        int middle = (nodeStart + nodeEnd) >>> 1;
+        int index = firstStationBeyond(2 * node, nodeStart, middle, from, distance);
+        return index != -1 ? index : firstStationBeyond(2 * node + 1, middle, nodeEnd, from, distance);
+    }
+
     public ArrayList<Route> getRootRoutes() {
         return rootRoutes;
     }
 
+    /**
+     * @return Distance from the start of this route to the end of each root route. Don't modify
+     */
+    public double[] getRootRouteEnds() {
+        return rootRouteEnds;
+    }
+
+    /**
+     * @return Index of the road the i:th root route is, see Routes.routeKeys
+     */
+    public int getRootRouteRoadIndex(int i) {
+        return rootRouteRoadIndices[i];
+    }
+
     public Routes getRoutes() {
         return routes;
     }
@@ -1,15 +1,9 @@
 package simulation;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class Routes {
     private final Logger logger = Logger.getGlobal();
@@ -18,210 +12,117 @@ public class Routes {
     public HashMap<String, Double> trafficData = new HashMap<>();
     public ArrayList<String> routeKeys = new ArrayList<>();
     public ArrayList<Double> endPointWeights = new ArrayList<>();
-    public final Random random;
+    public final RandomStreams randomStreams;
     public final long seed;
     public final double chargerAmountCoefficient;
+    private final RoadNetwork network;
+
+    // Shortest route between each pair of end points, indexed by the indices of the start and end point
+    private Route[][] routeCache;
+    // Every charging station once, the position is the id of the station
+    private final ArrayList<ChargingStation> chargingStations = new ArrayList<>();
+    private OriginDestinationDemand demand;
+    private final SplittableRandom routeRandom;    // Of routes not generated for a particular car
 
     public Routes(long seed_, double chargerAmountCoefficient_) {
+        this(RoadNetwork.getDefault(), seed_, chargerAmountCoefficient_);
+    }
+
+    public Routes(RoadNetwork network_, long seed_, double chargerAmountCoefficient_) {
+        network = network_;
+        demand = network.getTrafficDemand();
         seed = seed_;
-        random = new Random(seed);
+        randomStreams = new RandomStreams(seed);
+        routeRandom = randomStreams.forRun(RandomStreams.Purpose.Route);
         chargerAmountCoefficient = chargerAmountCoefficient_;
     }
 
-    private HashMap<String, Double> readTrafficData(String path) {
-
-        HashMap<String, Double> trafficData = new HashMap<>();
-
-        try {
-            InputStream in = RoadData.class.getResourceAsStream(path);
-            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+    public void generateRoutes() {
+        logger.config("Generating routes...");
+        for (String key : network.getRoadKeys()) {
+            RoadData roadData = network.getRoad(key);
+            ArrayList<ChargingStation> stations = roadData.createChargingStations(chargerAmountCoefficient);
+            for (ChargingStation station : stations) {
+                station.setId(chargingStations.size());
+                chargingStations.add(station);
+            }
+            routes.put(
+                    key,
+                    new Route(
+                            this,
+                            key,
+                            roadData.getLength(),
+                            stations,
+                            network.getStartPoint(key),
+                            network.getEndPoint(key)
+                    )
+            );
+            routeKeys.add(key);
+        }
 
-            br.readLine();
+        trafficData = new HashMap<>(network.getTrafficData());
+        endPointWeights = new ArrayList<>(network.getEndPointWeights());
 
-            String[] data = null;
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.length() <= 0) break;
-                data = line.split(";");
-                String routeId = data[0];
-                double routeTraffic = Double.parseDouble(data[2]);
-                trafficData.put(routeId, routeTraffic);
+        EndPoint[] endPoints = EndPoint.values();
+        routeCache = new Route[endPoints.length][endPoints.length];
+        for (EndPoint startPoint : endPoints) {
+            for (EndPoint endPoint : endPoints) {
+                if (startPoint != endPoint)
+                    routeCache[startPoint.index][endPoint.index] = generateShortestRoute2(startPoint, endPoint);
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (ArrayIndexOutOfBoundsException | NullPointerException | NumberFormatException e) {
-            e.printStackTrace();
-            throw new IllegalArgumentException("Charger file is in wrong format");
         }
-
-        return trafficData;
     }
 
-    public void generateRoutes() {
-        logger.config("Generating routes...");
-        RoadData heLa = RoadData.readChargingStations("/He-La-latauspisteet.csv", chargerAmountCoefficient);
-        routes.put(
-                "HeLa",
-                new Route(
-                        this,
-                        "HeLa",
-                        heLa.getLength(),
-                        heLa.getChargingStations(),
-                        EndPoint.Helsinki,
-                        EndPoint.Lahti
-                )
-        );
-        RoadData laJy = RoadData.readChargingStations("/La-Jy-latauspisteet.csv", chargerAmountCoefficient);
-        routes.put(
-                "LaJy",
-                new Route(
-                        this,
-                        "LaJy",
-                        laJy.getLength(),
-                        laJy.getChargingStations(),
-                        EndPoint.Lahti,
-                        EndPoint.Jyvaskyla
-                )
-        );
-        RoadData jyOu = RoadData.readChargingStations("/Jy-Ou-latauspisteet.csv", chargerAmountCoefficient);
-        routes.put(
-                "JyOu",
-                new Route(
-                        this,
-                        "JyOu",
-                        jyOu.getLength(),
-                        jyOu.getChargingStations(),
-                        EndPoint.Jyvaskyla,
-                        EndPoint.Oulu
-                )
-        );
-        RoadData ouKe = RoadData.readChargingStations("/Ou-Ke-latauspisteet.csv", chargerAmountCoefficient);
-        routes.put(
-                "OuKe",
-                new Route(
-                        this,
-                        "OuKe",
-                        ouKe.getLength(),
-                        ouKe.getChargingStations(),
-                        EndPoint.Oulu,
-                        EndPoint.Kemi
-                )
-        );
-        RoadData keRo = RoadData.readChargingStations("/Ke-Ro-latauspisteet.csv", chargerAmountCoefficient);
-        routes.put(
-                "KeRo",
-                new Route(
-                        this,
-                        "KeRo",
-                        keRo.getLength(),
-                        keRo.getChargingStations(),
-                        EndPoint.Kemi,
-                        EndPoint.Rovaniemi
-                )
-        );
-        RoadData roUt = RoadData.readChargingStations("/Ro-Ut-latauspisteet.csv", chargerAmountCoefficient);
-        routes.put(
-                "RoUt",
-                new Route(
-                        this,
-                        "RoUt",
-                        roUt.getLength(),
-                        roUt.getChargingStations(),
-                        EndPoint.Rovaniemi,
-                        EndPoint.Utsjoki
-                )
-        );
-
-        routeKeys.add("HeLa");
-        routeKeys.add("LaJy");
-        routeKeys.add("JyOu");
-        routeKeys.add("OuKe");
-        routeKeys.add("KeRo");
-        routeKeys.add("RoUt");
-
-        trafficData = readTrafficData("/Liikennemaarat.csv");
-        endPointWeights = calculateEndpointWeights();
+    /**
+     * @return The shortest route between the given points. The same instance is shared by every car, don't modify
+     */
+    public Route getRoute(EndPoint startPoint, EndPoint endPoint) {
+        if (startPoint == endPoint)
+            throw new IllegalArgumentException("Can't get a route between the same points");
+        return routeCache[startPoint.index][endPoint.index];
     }
 
-    private ArrayList<Double> calculateEndpointWeights() {
-
-        if (trafficData.size() <= 0)
-            return new ArrayList<>();
-
-        ArrayList<Double> weights = new ArrayList<>();
-        double sum = 0;
-        weights.add(trafficData.get(routeKeys.get(0)));
-        sum += weights.get(0);
+    /**
+     * @param id ChargingStation.getId()
+     */
+    public ChargingStation getChargingStation(int id) {
+        return chargingStations.get(id);
+    }
 
-        for (int i = 1; i < trafficData.size(); i++) {
-            weights.add(trafficData.get(routeKeys.get(i)) + trafficData.get(routeKeys.get(i-1)));
-            sum += weights.get(i);
-        }
+    public int getChargingStationCount() {
+        return chargingStations.size();
+    }
 
-        weights.add(trafficData.get(routeKeys.get(routeKeys.size()-1)));
-        sum += weights.get(weights.size()-1);
+    public Route generateRandomRoute() {
+        return generateRandomRoute(-1);
+    }
 
-        final double finalSum = sum;
-        weights = weights.stream().map(weight -> weight / finalSum).collect(Collectors.toCollection(ArrayList::new));
+    /**
+     * @param departureTime Seconds from the beginning of the simulation, used to pick the hourly demand matrix
+     */
+    public Route generateRandomRoute(long departureTime) {
+        return generateRandomRoute(departureTime, routeRandom);
+    }
 
-        return weights;
+    /**
+     * @param departureTime Seconds from the beginning of the simulation, used to pick the hourly demand matrix
+     * @param random Stream of the car the route is for
+     */
+    public Route generateRandomRoute(long departureTime, SplittableRandom random) {
+        int pair = demand.samplePair(random.nextDouble(), departureTime);
+        EndPoint[] endPoints = EndPoint.values();
+        return getRoute(endPoints[pair / endPoints.length], endPoints[pair % endPoints.length]);
     }
 
-    public Route generateRandomRoute() {
-        ArrayList<EndPoint> endPoints = new ArrayList<>(List.of(EndPoint.values()));
-        // Select random start point with weights
-        int startPointIndex = 0;
-        for (double r = random.nextDouble(); startPointIndex < endPointWeights.size() - 1; ++startPointIndex) {
-            r -= endPointWeights.get(startPointIndex);
-            if (r <= 0.0) break;
-        }
-        EndPoint startPoint = endPoints.get(startPointIndex);
-
-        // Calculate weights for end points
-        ArrayList<Double> weights = new ArrayList<>();
-        double sumOfWeights = 0;
-        boolean before = true;
-        for (int i = 0; i < endPoints.size(); i++) {
-            if (i == startPointIndex) {
-                weights.add(0d);
-                before = false;
-            }
-            else {
-                double weight;
-                if (before) {
-                    weight = trafficData.get(routeKeys.get(i));
-                    for (int j = i+1; j < startPointIndex; j++) {
-                        weight *= trafficData.get(routeKeys.get(j));
-                    }
-                }
-                else {
-                    weight = trafficData.get(routeKeys.get(i-1));
-                    for (int j = startPointIndex + 1; j < i; j++) {
-                        weight *= trafficData.get(routeKeys.get(j-1));
-                    }
-                }
-                weights.add(weight);
-                sumOfWeights += weight;
-            }
-        }
-        final double finalSumOfWeights = sumOfWeights;
-        weights = weights.stream().map(weight -> weight / finalSumOfWeights).collect(Collectors.toCollection(ArrayList::new));
-
-        // Select random end point with weights
-        int endPointIndex = 0;
-        for (double r = random.nextDouble(); endPointIndex < weights.size() - 1; ++endPointIndex) {
-            r -= weights.get(endPointIndex);
-            if (r <= 0.0) break;
-        }
-        EndPoint endPoint = endPoints.get(endPointIndex);
+    public OriginDestinationDemand getDemand() {
+        return demand;
+    }
 
-        // Randomly flip the route
-        Route route = generateShortestRoute2(startPoint, endPoint);
-        if (random.nextDouble() > 0.5) {
-            route = route.getFlippedRoute(this);
-        }
-        return route;
+    /**
+     * @param demand_ Trips between the end points. By default, the trips follow the traffic data
+     */
+    public void setDemand(OriginDestinationDemand demand_) {
+        demand = demand_;
     }
 
     /**
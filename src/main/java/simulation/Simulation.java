@@ -3,77 +3,109 @@ package simulation;
 
 import java.util.*;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 public class Simulation implements Runnable {
 
     private static final Logger logger = Logger.getGlobal();
 
+    public enum Engine {
+        Tick,           // Every car is moved every time step
+        DiscreteEvent,  // Cars are only handled when their state may change
+        Fleet           // Driving cars are moved in tight loops over the arrays of the CarFleet
+    }
+
     ArrayList<Car> cars;
-    ArrayList<Car> carsToBeAdded;
+    ArrayList<Car> carsInDepartureOrder;  // The first cars.size() of them have departed
+    CarFleet fleet;
     private long seconds;
     private final long TIME_STEP = 10; // seconds
     private int tps;
-    private final int NORM_DIST_MEAN;
-    private final int NORM_DIST_STANDARD_DEVIATION;
+    private final DemandProfile demandProfile;
+    private final DepartureSchedule departureSchedule;
     private final int TOTAL_CARS;
-    private final double batteryCapacityCoefficient;
-    private final double chargingPowerCoefficient;
+    private final VehicleParameters vehicleParameters;
     private final boolean shouldWait;
-    private final boolean isWinter;
     private final Routes routes;
     private final String name;
-    private final ArrayList<int[][]> stateStatisticsOverTime;
-    private final ArrayList<int[]> globalStateStatisticsOverTime;
-    private final ArrayList<int[]> roadStatisticsOverTime;
-    private final ArrayList<int[]> waitingStatisticsOverTime;
+    private TimeSeriesSampler sampler;
+    private SimulationListener listener;    // Null if there are no listeners
 
 
-    private double cumulativeDistributionCounter = 0.5;
+    private boolean carsCreatedLogged = false;
+    private Engine engine = Engine.Tick;
+    private int threads = 1;
 
     public Simulation(String name_, Routes routes_, int carCount, int standardDeviation, int mean, boolean shouldWait_, boolean isWinter_, double batteryCapacityCoefficient_, double chargingPowerCoefficient_) {
+        this(name_, routes_, carCount, new NormalDemandProfile(mean, standardDeviation), shouldWait_, isWinter_, batteryCapacityCoefficient_, chargingPowerCoefficient_);
+    }
+
+    public Simulation(String name_, Routes routes_, int carCount, DemandProfile demandProfile_, boolean shouldWait_, boolean isWinter_, double batteryCapacityCoefficient_, double chargingPowerCoefficient_) {
         name = name_;
         routes = routes_ != null ? routes_ : new Routes(0,1);
         TOTAL_CARS = carCount;
-        NORM_DIST_STANDARD_DEVIATION = standardDeviation;
-        NORM_DIST_MEAN = mean;
-        isWinter = isWinter_;
+        demandProfile = demandProfile_;
         tps = 100;
         shouldWait = shouldWait_;
-        stateStatisticsOverTime = new ArrayList<>();
-        globalStateStatisticsOverTime = new ArrayList<>();
-        roadStatisticsOverTime = new ArrayList<>();
-        waitingStatisticsOverTime = new ArrayList<>();
-        batteryCapacityCoefficient = batteryCapacityCoefficient_;
-        chargingPowerCoefficient = chargingPowerCoefficient_;
-        CarType.setBatteryCapacityCoefficient(batteryCapacityCoefficient);
-        CarType.setChargingPowerCoefficient(chargingPowerCoefficient);
+        sampler = new TimeSeriesSampler();
+        vehicleParameters = new VehicleParameters(batteryCapacityCoefficient_, chargingPowerCoefficient_, isWinter_);
 
+        departureSchedule = DepartureSchedule.create(demandProfile, TOTAL_CARS, TIME_STEP);
         createCars();
+
+        // The queues of the stations belong to this simulation
+        StationQueue.Links queueLinks = new StationQueue.Links(TOTAL_CARS);
+        for (Route route : routes.routes.values()) {
+            for (ChargingStation station : route.getChargingStations()) {
+                station.resetQueue(queueLinks);
+            }
+        }
     }
 
     private void createCars() {
         logger.config(String.format("[%s]: Creating cars...", name));
         cars = new ArrayList<>();
-        carsToBeAdded = new ArrayList<>();
+        // The amount of each car type and the departure order are decided first, so each car can be created straight
+        // into its slot. Every car draws from its own random streams, so the cars are independent of each other.
         int carSum = Arrays.stream(CarType.values()).mapToInt(CarType::getAmount).sum();
         double carCounter = 0;
         List<CarType> carTypes = Arrays.asList(CarType.values());
-        Collections.shuffle(carTypes, routes.random);
-        for (CarType carType : carTypes) {
-            carCounter += (double) carType.getAmount() / carSum * TOTAL_CARS;
+        RandomStreams.shuffle(carTypes, routes.randomStreams.forRun(RandomStreams.Purpose.CarTypes));
+        int[] typeCounts = new int[carTypes.size()];
+        int carCount = 0;
+        for (int i = 0; i < carTypes.size(); i++) {
+            carCounter += (double) carTypes.get(i).getAmount() / carSum * TOTAL_CARS;
             while (carCounter >= 1) {
-                Car car = new Car(carType, carsToBeAdded.size(), batteryCapacityCoefficient);
-                car.setRoute(routes.generateRandomRoute());
-                carsToBeAdded.add(car);
+                typeCounts[i]++;
+                carCount++;
                 carCounter--;
             }
         }
-        if (carsToBeAdded.size() == TOTAL_CARS - 1) {
-            Car car = new Car(carTypes.get(carTypes.size() - 1), carsToBeAdded.size(), batteryCapacityCoefficient);
-            car.setRoute(routes.generateRandomRoute());
-            carsToBeAdded.add(car);
+        if (carCount == TOTAL_CARS - 1) {
+            typeCounts[typeCounts.length - 1]++;
+            carCount++;
         }
-        Collections.shuffle(carsToBeAdded, routes.random);
+        CarType[] typeOfIndex = new CarType[carCount];
+        for (int i = 0, index = 0; i < carTypes.size(); i++) {
+            Arrays.fill(typeOfIndex, index, index + typeCounts[i], carTypes.get(i));
+            index += typeCounts[i];
+        }
+        // Cars are released in this order, so they are stored in it
+        int[] indexOfSlot = new int[carCount];
+        Arrays.setAll(indexOfSlot, slot -> slot);
+        RandomStreams.shuffle(indexOfSlot, routes.randomStreams.forRun(RandomStreams.Purpose.CarOrder));
+
+        fleet = new CarFleet(this, carCount, vehicleParameters);
+        Car[] carsBySlot = new Car[carCount];
+        // Routes are picked once the departure times are known, as the demand may depend on the time of day
+        IntStream.range(0, carCount).parallel().forEach(slot -> {
+            int index = indexOfSlot[slot];
+            Car car = new Car(fleet, typeOfIndex[index], index, slot);
+            long departureTime = slot < departureSchedule.size() ? departureSchedule.getDepartureTime(slot) : -1;
+            car.setRoute(routes.generateRandomRoute(departureTime, routes.randomStreams.forCar(index, RandomStreams.Purpose.Route)));
+            carsBySlot[slot] = car;
+        });
+        carsInDepartureOrder = new ArrayList<>(Arrays.asList(carsBySlot));
     }
 
     public void start() {
@@ -89,121 +121,157 @@ public class Simulation implements Runnable {
         }
          */
 
-        boolean carsCreatedLogged = false;
+        switch (engine) {
+            case Tick:
+                runTickEngine();
+                break;
+            case DiscreteEvent:
+                new EventEngine(this).run();
+                break;
+            case Fleet:
+                new FleetEngine(this).run();
+                break;
+        }
 
-        while (!allCarsHaveReachedTheirDestination() || seconds < NORM_DIST_MEAN + 1) {
+        logger.info(String.format("[%s]: Done.", name));
+    }
 
-            int[] globalStateStatistics = new int[Car.State.values().length];
-            int[][] stateStatistics = new int[routes.routeKeys.size()][Car.State.values().length];
-            for (int i = 0; i < stateStatistics.length; i++) {
-                for (int j = 0; j < stateStatistics[0].length; j++) {
-                    stateStatistics[i][j] = 0;
+    /**
+     * Moves every car on every time step, except that cars on the highway are left dormant until the time step on
+     * which they reach their exit, the end of their road or their destination, or run out of battery. Their time steps
+     * in between are skipped with Car.skipTicks(), which moves a car the same way as ticking it, so the results are the
+     * same. Their position and battery are computed by the Car view when asked.
+     */
+    private void runTickEngine() {
+        ActiveSet activeCars = new ActiveSet(TOTAL_CARS);
+        activeCars.addNewCars(cars.size());
+        ParkedCars dormantCars = new ParkedCars(fleet);
+        StateCounters counters = new StateCounters(carsInDepartureOrder.size(), routes.routeKeys.size());
+        long tick = 0;
+
+        while (shouldContinue(activeCars.allCarsHaveFinished())) {
+            int activeCarCount = activeCars.beginTick();
+            int i = 0;
+            while (true) {
+                // Positions are slots
+                int activePosition = i < activeCarCount ? activeCars.get(i) : Integer.MAX_VALUE;
+                int dormantPosition = dormantCars.next(tick);
+                if (activePosition == Integer.MAX_VALUE && dormantPosition == Integer.MAX_VALUE)
+                    break;
+
+                int position;
+                Car car;
+                if (dormantPosition < activePosition) {
+                    position = dormantPosition;
+                    car = dormantCars.unpark(tick, TIME_STEP);
+                } else {
+                    i++;
+                    position = activePosition;
+                    car = cars.get(position);
                 }
-            }
-
-            int[] carsOnRoad = {0, 0, 0, 0, 0, 0};
-            int[] carsWaiting = {0, 0, 0, 0, 0, 0};
-
-            for (Car car : cars) {
                 car.tick(TIME_STEP);
+                counters.update(position, car);
 
-                // Collecting stats
-                globalStateStatistics[car.getState().index]++;
-                if (car.getState() != Car.State.DestinationReached) {
-                    ArrayList<Route> rootRoutes = car.getRoute().getRootRoutes();
-                    double drivenDistance = car.getDrivenDistance();
-                    for (Route rootRoute : rootRoutes) {
-                        drivenDistance -= rootRoute.getLength();
-                        if (drivenDistance < 0) {
-                            int index = Math.min(rootRoute.getStartPoint().index, rootRoute.getEndPoint().index);
-                            stateStatistics[index][car.getState().index]++;
-                            break;
-                        }
-                    }
-                }
-                // Cars waiting
-                if (car.getState() == Car.State.Waiting) {
-                    ArrayList<Route> rootRoutes = car.getRoute().getRootRoutes();
-                    double drivenDistance = car.getDrivenDistance();
-                    for (Route rootRoute : rootRoutes) {
-                        drivenDistance -= rootRoute.getLength();
-                        if (drivenDistance < 0) {
-                            int index = Math.min(rootRoute.getStartPoint().index, rootRoute.getEndPoint().index);
-                            carsWaiting[index]++;
-                            break;
-                        }
-                    }
+                if (ActiveSet.isFinished(car.getState())) {
+                    activeCars.finish(position, tick);
+                    continue;
                 }
-                // Roads
-                if (car.getState() != Car.State.DestinationReached) {
-                    ArrayList<Route> rootRoutes = car.getRoute().getRootRoutes();
-                    double drivenDistance = car.getDrivenDistance();
-                    for (Route rootRoute : rootRoutes) {
-                        drivenDistance -= rootRoute.getLength();
-                        if (drivenDistance < 0) {
-                            int index = Math.min(rootRoute.getStartPoint().index, rootRoute.getEndPoint().index);
-                            carsOnRoad[index]++;
-                            break;
-                        }
+                if (car.getState() == Car.State.OnHighway) {
+                    long ticks = Math.min(car.ticksUntilStateChange(TIME_STEP), car.ticksUntilRoadChange(TIME_STEP));
+                    if (ticks > 1) {
+                        dormantCars.park(position, tick, tick + ticks);
+                        continue;
                     }
                 }
+                activeCars.keep(position);
             }
-            stateStatisticsOverTime.add(stateStatistics);
-            globalStateStatisticsOverTime.add(globalStateStatistics);
-            roadStatisticsOverTime.add(carsOnRoad);
-            waitingStatisticsOverTime.add(carsWaiting);
-
-            cumulativeDistributionCounter += distributionProbability()*(double)TOTAL_CARS*(double)TIME_STEP;
-            while (cumulativeDistributionCounter >= 1) {
-                carsToBeAdded.get(0).setCreationTime((int) seconds);
-                cars.add(carsToBeAdded.remove(0));
+            activeCars.endTick();
+            counters.addSnapshot(this);
 
-                cumulativeDistributionCounter -= 1;
-            }
+            endTick();
+            activeCars.addNewCars(cars.size());
+            tick++;
+        }
+        activeCars.creditFinishedCars(cars, tick - 1, TIME_STEP);
+        dormantCars.creditParkedCars(tick - 1, TIME_STEP);
+    }
 
-            if (shouldWait) {
-                try {
-                    Thread.sleep(Math.round(1000d / tps));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
+    boolean shouldContinue(boolean allCarsHaveReachedTheirDestination) {
+        return !allCarsHaveReachedTheirDestination || seconds < demandProfile.getMean() + 1;
+    }
 
-            // Logging
-            // All cars created
-            if (!carsCreatedLogged && cars.size() == TOTAL_CARS-1) {
-                logger.config(String.format("[%s]: All cars created", name));
-                carsCreatedLogged = true;
-            }
+    /**
+     * Called by every engine once per time step. The arrays are only read.
+     */
+    void addStatistics(int[] globalStateStatistics, int[][] stateStatistics, int[] carsOnRoad, int[] carsWaiting) {
+        sampler.record(seconds, globalStateStatistics, stateStatistics, carsOnRoad, carsWaiting);
+    }
 
-            seconds += TIME_STEP;
+    /**
+     * Releases new cars onto the road and moves the simulation one time step forward.
+     * Called by every engine after the cars of the current time step have been handled.
+     */
+    void endTick() {
+        if (listener != null)
+            listener.tickCompleted(seconds);
+
+        int departures = Math.min(departureSchedule.size(), carsInDepartureOrder.size());
+        while (cars.size() < departures && departureSchedule.getDepartureTime(cars.size()) <= seconds) {
+            Car car = carsInDepartureOrder.get(cars.size());
+            car.setCreationTime((int) seconds);
+            cars.add(car);
+            if (listener != null)
+                listener.carDeparted(car, seconds);
+        }
 
-            if (seconds > 36000000) {
-                logger.severe(String.format("[%s]: Simulation stopped by force", name));
-                System.exit(1);
+        if (shouldWait) {
+            try {
+                Thread.sleep(Math.round(1000d / tps));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
             }
         }
 
-        logger.info(String.format("[%s]: Done.", name));
-    }
+        // Logging
+        // All cars created
+        if (!carsCreatedLogged && cars.size() == TOTAL_CARS-1) {
+            logger.config(String.format("[%s]: All cars created", name));
+            carsCreatedLogged = true;
+        }
 
-    private double distributionProbability() {
-        return (Math.pow(Math.E, -1/2d * Math.pow((seconds -  NORM_DIST_MEAN)/(double)NORM_DIST_STANDARD_DEVIATION,2)))
-                / (NORM_DIST_STANDARD_DEVIATION*Math.sqrt(2*Math.PI));
-    }
+        seconds += TIME_STEP;
 
-    private boolean allCarsHaveReachedTheirDestination() {
-        for (Car car : cars) {
-            if (car.getState() != Car.State.DestinationReached && car.getState() != Car.State.BatteryDepleted)
-                return false;
+        if (seconds > 36000000) {
+            logger.severe(String.format("[%s]: Simulation stopped by force", name));
+            System.exit(1);
         }
-        return true;
     }
 
     public long getPassedSeconds() {
         return seconds;
     }
 
+    public void setEngine(Engine engine_) {
+        engine = engine_;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets the amount of threads the fleet engine moves driving cars with. The results don't depend on it.
+     */
+    public void setThreads(int threads_) {
+        if (threads_ < 1)
+            throw new IllegalArgumentException("Amount of threads has to be at least 1");
+        threads = threads_;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     public void setTps(int tps_) {
         tps = tps_;
     }
@@ -228,20 +296,32 @@ public class Simulation implements Runnable {
         return name;
     }
 
-    public ArrayList<int[][]> getStateStatisticsOverTime() {
-        return stateStatisticsOverTime;
-    }
-
-    public ArrayList<int[]> getGlobalStateStatisticsOverTime() {
-        return globalStateStatisticsOverTime;
+    /**
+     * Adds a listener receiving the events of the simulation. Has to be called before the simulation is started.
+     */
+    public void addListener(SimulationListener listener_) {
+        if (listener == null) {
+            listener = listener_;
+        } else {
+            if (!(listener instanceof SimulationListeners)) {
+                SimulationListeners listeners = new SimulationListeners();
+                listeners.add(listener);
+                listener = listeners;
+            }
+            ((SimulationListeners) listener).add(listener_);
+        }
+        fleet.listener = listener;
     }
 
-    public ArrayList<int[]> getRoadStatisticsOverTime() {
-        return roadStatisticsOverTime;
+    public TimeSeriesSampler getSampler() {
+        return sampler;
     }
 
-    public ArrayList<int[]> getWaitingStatisticsOverTime() {
-        return waitingStatisticsOverTime;
+    /**
+     * Replaces the sampler recording the state statistics. Has to be called before the simulation is started.
+     */
+    public void setSampler(TimeSeriesSampler sampler_) {
+        sampler = sampler_;
     }
 
     public int getTotalCars() {
@@ -249,19 +329,31 @@ public class Simulation implements Runnable {
     }
 
     public int getStandardDeviation() {
-        return NORM_DIST_STANDARD_DEVIATION;
+        return (int) Math.round(demandProfile.getStandardDeviation());
+    }
+
+    public DemandProfile getDemandProfile() {
+        return demandProfile;
+    }
+
+    public DepartureSchedule getDepartureSchedule() {
+        return departureSchedule;
+    }
+
+    public VehicleParameters getVehicleParameters() {
+        return vehicleParameters;
     }
 
     public double getBatteryCapacityCoefficient() {
-        return batteryCapacityCoefficient;
+        return vehicleParameters.getBatteryCapacityCoefficient();
     }
 
     public double getChargingPowerCoefficient() {
-        return chargingPowerCoefficient;
+        return vehicleParameters.getChargingPowerCoefficient();
     }
 
     public boolean isWinter() {
-        return isWinter;
+        return vehicleParameters.isWinter();
     }
 
     @Override
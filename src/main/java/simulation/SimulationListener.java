@@ -0,0 +1,27 @@
+package simulation;
+
+/**
+ * Receives events from a running simulation. Added with Simulation.addListener() before the simulation is started.
+ * Events are delivered on the thread running the simulation, in the order they happen. Times are in seconds from the
+ * start of the simulation.
+ */
+public interface SimulationListener {
+
+    /**
+     * All cars have been handled and the statistics recorded for the time step.
+     */
+    default void tickCompleted(long seconds) {}
+
+    default void carDeparted(Car car, long seconds) {}
+
+    default void carStateChanged(Car car, Car.State previousState, Car.State state, long seconds) {}
+
+    default void chargerAcquired(Car car, ChargingStation station, ChargingStation.Charger charger, long seconds) {}
+
+    default void chargerReleased(Car car, ChargingStation station, ChargingStation.Charger charger, long seconds) {}
+
+    /**
+     * The car has reached its destination or run out of battery.
+     */
+    default void carFinished(Car car, long seconds) {}
+}
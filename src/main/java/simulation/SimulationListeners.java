@@ -0,0 +1,52 @@
+package simulation;
+
+import java.util.ArrayList;
+
+/**
+ * Forwards events to several listeners. Only used when more than one listener has been added, so that a simulation
+ * without listeners only checks for null.
+ */
+class SimulationListeners implements SimulationListener {
+
+    private final ArrayList<SimulationListener> listeners = new ArrayList<>();
+
+    void add(SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void tickCompleted(long seconds) {
+        for (SimulationListener listener : listeners)
+            listener.tickCompleted(seconds);
+    }
+
+    @Override
+    public void carDeparted(Car car, long seconds) {
+        for (SimulationListener listener : listeners)
+            listener.carDeparted(car, seconds);
+    }
+
+    @Override
+    public void carStateChanged(Car car, Car.State previousState, Car.State state, long seconds) {
+        for (SimulationListener listener : listeners)
+            listener.carStateChanged(car, previousState, state, seconds);
+    }
+
+    @Override
+    public void chargerAcquired(Car car, ChargingStation station, ChargingStation.Charger charger, long seconds) {
+        for (SimulationListener listener : listeners)
+            listener.chargerAcquired(car, station, charger, seconds);
+    }
+
+    @Override
+    public void chargerReleased(Car car, ChargingStation station, ChargingStation.Charger charger, long seconds) {
+        for (SimulationListener listener : listeners)
+            listener.chargerReleased(car, station, charger, seconds);
+    }
+
+    @Override
+    public void carFinished(Car car, long seconds) {
+        for (SimulationListener listener : listeners)
+            listener.carFinished(car, seconds);
+    }
+}
@@ -0,0 +1,75 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Amount of cars in each state, globally and on each road, and the amount of cars waiting on each road. The counts
+ * are only changed when a car changes its state or road, so the statistics of a time step are the counters as they
+ * are. Finished cars stay counted in their final state.
+ */
+class StateCounters {
+
+    // Indexed by the position of the car in Simulation.cars, -1 if the car hasn't been counted yet
+    private final int[] countedState;
+    private final int[] countedRoad;
+
+    private final int[] globalStateStatistics;
+    private final int[][] stateStatistics;
+    private final int[] carsOnRoad;
+    private final int[] carsWaiting;
+
+    StateCounters(int carCount, int roadCount) {
+        countedState = new int[carCount];
+        countedRoad = new int[carCount];
+        Arrays.fill(countedState, -1);
+        Arrays.fill(countedRoad, -1);
+
+        globalStateStatistics = new int[CarFleet.STATE_COUNT];
+        stateStatistics = new int[roadCount][CarFleet.STATE_COUNT];
+        carsOnRoad = new int[roadCount];
+        carsWaiting = new int[roadCount];
+    }
+
+    /**
+     * Moves the car to the counters of its current state and road, if either has changed since the previous update.
+     */
+    void update(int position, Car car) {
+        int state = car.getState().index;
+        int road = car.getRoadIndex();
+        int previousState = countedState[position];
+        int previousRoad = countedRoad[position];
+        if (state == previousState && road == previousRoad)
+            return;
+
+        if (previousState != -1) {
+            globalStateStatistics[previousState]--;
+            if (previousRoad != -1) {
+                stateStatistics[previousRoad][previousState]--;
+                carsOnRoad[previousRoad]--;
+                if (previousState == Car.State.Waiting.index)
+                    carsWaiting[previousRoad]--;
+            }
+        }
+        globalStateStatistics[state]++;
+        if (road != -1) {
+            stateStatistics[road][state]++;
+            carsOnRoad[road]++;
+            if (state == Car.State.Waiting.index)
+                carsWaiting[road]++;
+        }
+
+        countedState[position] = state;
+        countedRoad[position] = road;
+    }
+
+    int getFinishedCars() {
+        return globalStateStatistics[Car.State.DestinationReached.index] + globalStateStatistics[Car.State.BatteryDepleted.index];
+    }
+
+    /**
+     * Adds the counters to the statistics of the simulation for the current time step.
+     */
+    void addSnapshot(Simulation simulation) {
+        simulation.addStatistics(globalStateStatistics, stateStatistics, carsOnRoad, carsWaiting);
+    }
+}
@@ -0,0 +1,97 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Queue of the cars waiting at one charging station, in the order they arrived. A car waits in at most one queue at a
+ * time, so the queues of all stations of a simulation share the links between the cars, indexed by Car.getIndex().
+ * Adding, removing the first and removing any car take constant time.
+ */
+final class StationQueue {
+
+    private static final int NOT_QUEUED = -2;
+    private static final int NONE = -1;
+
+    /**
+     * Links between the cars of all queues of a simulation.
+     */
+    static final class Links {
+        private int[] next;
+        private int[] previous;
+
+        Links(int carCount) {
+            next = new int[0];
+            previous = new int[0];
+            ensureCapacity(carCount);
+        }
+
+        private void ensureCapacity(int carCount) {
+            if (carCount <= next.length)
+                return;
+            int oldLength = next.length;
+            int length = Math.max(carCount, 2 * oldLength);
+            next = Arrays.copyOf(next, length);
+            previous = Arrays.copyOf(previous, length);
+            Arrays.fill(next, oldLength, length, NOT_QUEUED);
+            Arrays.fill(previous, oldLength, length, NOT_QUEUED);
+        }
+    }
+
+    private final Links links;
+    private int first;
+    private int last;
+    private int size;
+
+    StationQueue(Links links_) {
+        links = links_;
+        first = NONE;
+        last = NONE;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Index of the first car, or -1 if the queue is empty
+     */
+    int peek() {
+        return first;
+    }
+
+    void add(int carIndex) {
+        links.ensureCapacity(carIndex + 1);
+        if (links.next[carIndex] != NOT_QUEUED)
+            throw new IllegalStateException(String.format("Car %d is already waiting in a queue", carIndex));
+        links.previous[carIndex] = last;
+        links.next[carIndex] = NONE;
+        if (last == NONE)
+            first = carIndex;
+        else
+            links.next[last] = carIndex;
+        last = carIndex;
+        size++;
+    }
+
+    /**
+     * Removes the car if it is waiting. The car has to be in this queue if it is in any.
+     */
+    void remove(int carIndex) {
+        if (carIndex >= links.next.length || links.next[carIndex] == NOT_QUEUED)
+            return;
+        int next = links.next[carIndex];
+        int previous = links.previous[carIndex];
+        if (previous == NONE)
+            first = next;
+        else
+            links.next[previous] = next;
+        if (next == NONE)
+            last = previous;
+        else
+            links.previous[next] = previous;
+        links.next[carIndex] = NOT_QUEUED;
+        links.previous[carIndex] = NOT_QUEUED;
+        size--;
+    }
+}
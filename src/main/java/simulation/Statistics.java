@@ -54,14 +54,12 @@ public class Statistics {
     private final double chargingPowerCoefficient;
     private final double batteryCapacityCoefficient;
     private final boolean winter;
+    private final VehicleParameters vehicleParameters;
     private final int[] trafficStatistics; // count
     private final long[][] stateStatistics; // seconds
     private final long totalTime; // seconds
     private ArrayList<CarStatistics> carStatistics;
-    private ArrayList<int[][]> stateStatisticsOverTime;
-    private ArrayList<int[]> globalStateStatisticsOverTime;
-    private ArrayList<int[]> roadStatisticsOverTime;
-    private ArrayList<int[]> waitingStatisticsOverTime;
+    private TimeSeriesSampler sampler;
 
 
     private final long timeStep;
@@ -77,13 +75,11 @@ public class Statistics {
         carStatistics = new ArrayList<>();
         totalTime = simulation.getPassedSeconds();
         timeStep = simulation.getTimeStep();
-        stateStatisticsOverTime = simulation.getStateStatisticsOverTime();
-        globalStateStatisticsOverTime = simulation.getGlobalStateStatisticsOverTime();
-        roadStatisticsOverTime = simulation.getRoadStatisticsOverTime();
-        waitingStatisticsOverTime = simulation.getWaitingStatisticsOverTime();
+        sampler = simulation.getSampler();
         chargingPowerCoefficient = simulation.getChargingPowerCoefficient();
         batteryCapacityCoefficient = simulation.getBatteryCapacityCoefficient();
         winter = simulation.isWinter();
+        vehicleParameters = simulation.getVehicleParameters();
         cars = simulation.getCars();
         Collections.sort(cars);
         totalCars = cars.size();
@@ -208,7 +204,7 @@ public class Statistics {
         s.append("\n");
 
         for (CarType carType : CarType.values()) {
-            s.append(String.format("%s;%d;%.2f;%.2f;%.2f;%.2f", carType.name(), carModelStatistics.get(carType).amount, carType.getCapacity(), carType.getMaxChargingPowerAC(), carType.getMaxChargingPowerDC(), carType.getDrivingEfficiency()));
+            s.append(String.format("%s;%d;%.2f;%.2f;%.2f;%.2f", carType.name(), carModelStatistics.get(carType).amount, vehicleParameters.getCapacity(carType), vehicleParameters.getMaxChargingPowerAC(carType), vehicleParameters.getMaxChargingPowerDC(carType), vehicleParameters.getDrivingEfficiency(carType)));
             for (String key : carModelRunnableCallbacks.keySet()) {
                 s.append(";").append(carModelRunnableCallbacks.get(key).run(carModelStatistics.get(carType)));
             }
@@ -232,7 +228,7 @@ public class Statistics {
                 s.append(";").append(pair.getValue().run(car));
             }
             s.append(String.format(";%.2f;%.2f;%.2f;%.2f",
-                    car.getCarType().getCapacity(), car.getCarType().getMaxChargingPowerAC(), car.getCarType().getMaxChargingPowerDC(), car.getCarType().getDrivingEfficiency()
+                    car.getCapacity(), vehicleParameters.getMaxChargingPowerAC(car.getCarType()), vehicleParameters.getMaxChargingPowerDC(car.getCarType()), vehicleParameters.getDrivingEfficiency(car.getCarType())
             ));
             s.append("\n");
         }
@@ -284,20 +280,32 @@ public class Statistics {
 
         // State stats over time
         s.append("Autojen tila joka ajanhetkeltä:\n");
-        s.append("Aika (min);Valtatiellä;Matkalla valtatielle;Matkalla valtatieltä;Matkalla laturille;Matkalla laturilta;Odottamassa;Latautumassa;Akku loppunut;Perillä;Yhteensä;;Tiellä (HeLa);Tiellä (LaJy);Tiellä (JyOu);Tiellä (OuKe);Tiellä (KeRo);Tiellä (RoUt);Odottamassa (HeLa);Odottamassa (LaJy);Odottamassa (JyOu);Odottamassa (OuKe);Odottamassa (KeRo);Odottamassa (RoUt);\n");
-        for (int i = 0; i < globalStateStatisticsOverTime.size(); i += 30) {
-            s.append((double) i/6d);
+        s.append("Aika (min);Valtatiellä;Matkalla valtatielle;Matkalla valtatieltä;Matkalla laturille;Matkalla laturilta;Odottamassa;Latautumassa;Akku loppunut;Perillä;Yhteensä;;Tiellä (HeLa);Tiellä (LaJy);Tiellä (JyOu);Tiellä (OuKe);Tiellä (KeRo);Tiellä (RoUt);Odottamassa (HeLa);Odottamassa (LaJy);Odottamassa (JyOu);Odottamassa (OuKe);Odottamassa (KeRo);Odottamassa (RoUt);");
+        if (sampler.isKeepingWindowStatistics())
+            s.append("Odottamassa enintään (HeLa);Odottamassa enintään (LaJy);Odottamassa enintään (JyOu);Odottamassa enintään (OuKe);Odottamassa enintään (KeRo);Odottamassa enintään (RoUt);Odottamassa keskimäärin (HeLa);Odottamassa keskimäärin (LaJy);Odottamassa keskimäärin (JyOu);Odottamassa keskimäärin (OuKe);Odottamassa keskimäärin (KeRo);Odottamassa keskimäärin (RoUt);");
+        s.append("\n");
+        for (int sample = 0; sample < sampler.getSampleCount(); sample++) {
+            s.append((double) sampler.getSampleTime(sample)/60d);
             int sum = 0;
-            for (int carCount : globalStateStatisticsOverTime.get(i)) {
+            for (int state = 0; state < states.length; state++) {
+                int carCount = sampler.getValue(sample, sampler.globalStateColumn(state));
                 s.append(";").append(carCount);
                 sum += carCount;
             }
             s.append(";").append(sum).append(";");
-            for (int carCount : roadStatisticsOverTime.get(i)) {
-                s.append(";").append(carCount);
+            for (int road = 0; road < sampler.getRoadCount(); road++) {
+                s.append(";").append(sampler.getValue(sample, sampler.roadColumn(road)));
             }
-            for (int carCount : waitingStatisticsOverTime.get(i)) {
-                s.append(";").append(carCount);
+            for (int road = 0; road < sampler.getRoadCount(); road++) {
+                s.append(";").append(sampler.getValue(sample, sampler.waitingColumn(road)));
+            }
+            if (sampler.isKeepingWindowStatistics()) {
+                for (int road = 0; road < sampler.getRoadCount(); road++) {
+                    s.append(";").append(sampler.getMaximum(sample, sampler.waitingColumn(road)));
+                }
+                for (int road = 0; road < sampler.getRoadCount(); road++) {
+                    s.append(String.format(";%.2f", sampler.getMean(sample, sampler.waitingColumn(road))));
+                }
             }
             s.append("\n");
         }
@@ -0,0 +1,59 @@
+package simulation;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs independent jobs (for example one simulation run of a parameter sweep) on a fixed size worker pool.
+ * Results are handed to the result handler on the calling thread in the same order the jobs were given,
+ * so the output does not depend on the amount of workers.
+ */
+public class SweepExecutor<T> {
+
+    public interface ResultHandler<T> {
+        void handle(T result, int jobsDone);
+    }
+
+    private final int workerCount;
+    private final int maxJobsInProgress;
+
+    public SweepExecutor(int workerCount_) {
+        if (workerCount_ < 1)
+            throw new IllegalArgumentException("Worker count has to be at least 1");
+        workerCount = workerCount_;
+        // Bounds the amount of finished results waiting for an earlier job
+        maxJobsInProgress = 4 * workerCount;
+    }
+
+    public void run(List<Callable<T>> jobs, ResultHandler<T> resultHandler) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "sweep-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<T>> jobsInProgress = new ArrayDeque<>();
+        int nextJob = 0;
+        int jobsDone = 0;
+        try {
+            while (nextJob < jobs.size() || !jobsInProgress.isEmpty()) {
+                while (nextJob < jobs.size() && jobsInProgress.size() < maxJobsInProgress) {
+                    jobsInProgress.add(workers.submit(jobs.get(nextJob++)));
+                }
+                T result;
+                try {
+                    result = jobsInProgress.remove().get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(String.format("Job %d failed", jobsDone), e.getCause());
+                }
+                resultHandler.handle(result, ++jobsDone);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+}
@@ -0,0 +1,205 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Records the state statistics of a simulation at a fixed interval of time steps. Each statistic is a column stored
+ * in its own primitive buffer. Optionally the minimum, maximum and mean of every column within each window between
+ * two samples are kept as well.
+ * <p>
+ * Sample k is taken on time step k * interval, and its window consists of the time steps after the previous sample up
+ * to and including the sampled time step.
+ */
+public class TimeSeriesSampler {
+
+    public static final int DEFAULT_INTERVAL = 30;  // Time steps
+
+    private final int interval;
+    private final boolean keepWindowStatistics;
+    private int roadCount;
+    private int columnCount;
+
+    private long ticks;
+    private int sampleCount;
+    private long[] sampleTimes;     // In seconds
+    private int[][] values;         // [column][sample]
+    private int[][] minimums;
+    private int[][] maximums;
+    private double[][] means;
+
+    // Current window
+    private int[] windowMinimums;
+    private int[] windowMaximums;
+    private long[] windowSums;
+    private int windowLength;
+
+    public TimeSeriesSampler() {
+        this(DEFAULT_INTERVAL, false);
+    }
+
+    /**
+     * @param interval_ Amount of time steps between samples
+     * @param keepWindowStatistics_ Whether to keep the minimum, maximum and mean within each window
+     */
+    public TimeSeriesSampler(int interval_, boolean keepWindowStatistics_) {
+        if (interval_ < 1)
+            throw new IllegalArgumentException("Sampling interval has to be at least one time step");
+        interval = interval_;
+        keepWindowStatistics = keepWindowStatistics_;
+        columnCount = -1;
+    }
+
+    private void initialize(int roadCount_) {
+        roadCount = roadCount_;
+        columnCount = (1 + roadCount) * CarFleet.STATE_COUNT + 2 * roadCount;
+        int capacity = 64;
+        sampleTimes = new long[capacity];
+        values = new int[columnCount][capacity];
+        if (keepWindowStatistics) {
+            minimums = new int[columnCount][capacity];
+            maximums = new int[columnCount][capacity];
+            means = new double[columnCount][capacity];
+            windowMinimums = new int[columnCount];
+            windowMaximums = new int[columnCount];
+            windowSums = new long[columnCount];
+            resetWindow();
+        }
+    }
+
+    /**
+     * Called by the engine once per time step. The arrays are only read.
+     *
+     * @param seconds Time of the time step
+     */
+    void record(long seconds, int[] globalStateStatistics, int[][] stateStatistics, int[] carsOnRoad, int[] carsWaiting) {
+        if (columnCount == -1)
+            initialize(carsOnRoad.length);
+
+        boolean isSample = ticks % interval == 0;
+        ticks++;
+        if (!keepWindowStatistics && !isSample)
+            return;
+        if (keepWindowStatistics)
+            windowLength++;
+        if (isSample && sampleCount == sampleTimes.length)
+            grow();
+
+        int column = 0;
+        for (int count : globalStateStatistics)
+            column = add(column, count, isSample);
+        for (int[] roadStateStatistics : stateStatistics)
+            for (int count : roadStateStatistics)
+                column = add(column, count, isSample);
+        for (int count : carsOnRoad)
+            column = add(column, count, isSample);
+        for (int count : carsWaiting)
+            column = add(column, count, isSample);
+
+        if (isSample) {
+            sampleTimes[sampleCount] = seconds;
+            sampleCount++;
+            if (keepWindowStatistics)
+                resetWindow();
+        }
+    }
+
+    private int add(int column, int count, boolean isSample) {
+        if (keepWindowStatistics) {
+            windowMinimums[column] = Math.min(windowMinimums[column], count);
+            windowMaximums[column] = Math.max(windowMaximums[column], count);
+            windowSums[column] += count;
+        }
+        if (isSample) {
+            values[column][sampleCount] = count;
+            if (keepWindowStatistics) {
+                minimums[column][sampleCount] = windowMinimums[column];
+                maximums[column][sampleCount] = windowMaximums[column];
+                means[column][sampleCount] = (double) windowSums[column] / windowLength;
+            }
+        }
+        return column + 1;
+    }
+
+    private void resetWindow() {
+        Arrays.fill(windowMinimums, Integer.MAX_VALUE);
+        Arrays.fill(windowMaximums, Integer.MIN_VALUE);
+        Arrays.fill(windowSums, 0);
+        windowLength = 0;
+    }
+
+    private void grow() {
+        int capacity = sampleTimes.length * 2;
+        sampleTimes = Arrays.copyOf(sampleTimes, capacity);
+        for (int column = 0; column < columnCount; column++) {
+            values[column] = Arrays.copyOf(values[column], capacity);
+            if (keepWindowStatistics) {
+                minimums[column] = Arrays.copyOf(minimums[column], capacity);
+                maximums[column] = Arrays.copyOf(maximums[column], capacity);
+                means[column] = Arrays.copyOf(means[column], capacity);
+            }
+        }
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public boolean isKeepingWindowStatistics() {
+        return keepWindowStatistics;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getRoadCount() {
+        return roadCount;
+    }
+
+    /**
+     * @return Time of the sample in seconds
+     */
+    public long getSampleTime(int sample) {
+        return sampleTimes[sample];
+    }
+
+    public int globalStateColumn(int state) {
+        return state;
+    }
+
+    public int stateColumn(int road, int state) {
+        return (1 + road) * CarFleet.STATE_COUNT + state;
+    }
+
+    public int roadColumn(int road) {
+        return (1 + roadCount) * CarFleet.STATE_COUNT + road;
+    }
+
+    public int waitingColumn(int road) {
+        return (1 + roadCount) * CarFleet.STATE_COUNT + roadCount + road;
+    }
+
+    public int getValue(int sample, int column) {
+        return values[column][sample];
+    }
+
+    public int getMinimum(int sample, int column) {
+        checkWindowStatistics();
+        return minimums[column][sample];
+    }
+
+    public int getMaximum(int sample, int column) {
+        checkWindowStatistics();
+        return maximums[column][sample];
+    }
+
+    public double getMean(int sample, int column) {
+        checkWindowStatistics();
+        return means[column][sample];
+    }
+
+    private void checkWindowStatistics() {
+        if (!keepWindowStatistics)
+            throw new IllegalStateException("Window statistics are not kept by this sampler");
+    }
+}
@@ -0,0 +1,191 @@
+package simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Trip events of the cars of a simulation as fixed-size binary records in a ring buffer allocated up front. Added with
+ * Simulation.addListener(), so a simulation without a journal only checks for null, and recording an event only
+ * writes a few numbers into the buffer. When the buffer is full, the oldest records are overwritten, or first spilled
+ * to a file if one was given.
+ * <p>
+ * A record is RECORD_SIZE bytes, big-endian: seconds (long), car index (int), station id (int, -1 if none), state of
+ * charge (float, 0-1), event (byte, Event ordinal), state of the car after the event (byte, Car.State index) and two
+ * bytes of padding. The spill file is the records one after another.
+ */
+public final class TripJournal implements SimulationListener, Closeable {
+
+    private static final Logger logger = Logger.getGlobal();
+
+    public static final int RECORD_SIZE = 24;
+
+    public enum Event {
+        Departed,
+        StateChanged,
+        ChargerAcquired,
+        ChargerReleased
+    }
+
+    private static final Event[] EVENTS = Event.values();
+    private static final Car.State[] STATES = Car.State.values();
+
+    private final int capacity;     // In records
+    private final ByteBuffer records;
+    private FileChannel spill;      // Null if the journal isn't spilled
+    private long recorded;  // Records added since the start
+    private long spilled;   // Records written to the spill file
+
+    /**
+     * @param capacity_ Amount of records kept in memory
+     */
+    public TripJournal(int capacity_) {
+        if (capacity_ < 1)
+            throw new IllegalArgumentException("Trip journal has to hold at least one record");
+        capacity = capacity_;
+        records = ByteBuffer.allocate(Math.multiplyExact(capacity, RECORD_SIZE));
+    }
+
+    /**
+     * @param capacity_ Amount of records kept in memory
+     * @param spillFile Every record is written to this file, which is replaced if it exists
+     */
+    public TripJournal(int capacity_, Path spillFile) throws IOException {
+        this(capacity_);
+        spill = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void carDeparted(Car car, long seconds) {
+        add(seconds, car, Event.Departed, car.getState(), -1);
+    }
+
+    @Override
+    public void carStateChanged(Car car, Car.State previousState, Car.State state, long seconds) {
+        ChargingStation station = car.getCurrentChargingStation();
+        add(seconds, car, Event.StateChanged, state, station != null ? station.getId() : -1);
+    }
+
+    @Override
+    public void chargerAcquired(Car car, ChargingStation station, ChargingStation.Charger charger, long seconds) {
+        add(seconds, car, Event.ChargerAcquired, car.getState(), station.getId());
+    }
+
+    @Override
+    public void chargerReleased(Car car, ChargingStation station, ChargingStation.Charger charger, long seconds) {
+        add(seconds, car, Event.ChargerReleased, car.getState(), station.getId());
+    }
+
+    private void add(long seconds, Car car, Event event, Car.State state, int stationId) {
+        if (spill != null && recorded - spilled == capacity)
+            flush();
+        int offset = (int) (recorded % capacity) * RECORD_SIZE;
+        records.putLong(offset, seconds);
+        records.putInt(offset + 8, car.getIndex());
+        records.putInt(offset + 12, stationId);
+        records.putFloat(offset + 16, (float) (car.getBattery() / car.getCapacity()));
+        records.put(offset + 20, (byte) event.ordinal());
+        records.put(offset + 21, (byte) state.index);
+        recorded++;
+    }
+
+    /**
+     * Writes the records not yet in the spill file to it. If writing fails, the journal stops spilling.
+     */
+    public void flush() {
+        if (spill == null)
+            return;
+        try {
+            while (spilled < recorded) {
+                int start = (int) (spilled % capacity);
+                int count = (int) Math.min(recorded - spilled, capacity - start);
+                ByteBuffer chunk = records.duplicate();
+                chunk.limit((start + count) * RECORD_SIZE).position(start * RECORD_SIZE);
+                while (chunk.hasRemaining())
+                    spill.write(chunk);
+                spilled += count;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            logger.severe("Failed to spill the trip journal");
+            closeSpill();
+        }
+    }
+
+    /**
+     * Flushes and closes the spill file. The records in memory can still be read.
+     */
+    @Override
+    public void close() {
+        flush();
+        closeSpill();
+    }
+
+    private void closeSpill() {
+        if (spill == null)
+            return;
+        try {
+            spill.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        spill = null;
+    }
+
+    /**
+     * @return Amount of records added since the start, including those no longer in memory
+     */
+    public long getRecordCount() {
+        return recorded;
+    }
+
+    /**
+     * @return Amount of records in memory. Record 0 is the oldest of them
+     */
+    public int size() {
+        return (int) Math.min(recorded, capacity);
+    }
+
+    public long getSeconds(int record) {
+        return records.getLong(offset(record));
+    }
+
+    public int getCarIndex(int record) {
+        return records.getInt(offset(record) + 8);
+    }
+
+    /**
+     * @return ChargingStation.getId() of the station, or -1 if the car had none
+     */
+    public int getStationId(int record) {
+        return records.getInt(offset(record) + 12);
+    }
+
+    /**
+     * @return Battery level relative to the capacity
+     */
+    public float getStateOfCharge(int record) {
+        return records.getFloat(offset(record) + 16);
+    }
+
+    public Event getEvent(int record) {
+        return EVENTS[records.get(offset(record) + 20)];
+    }
+
+    /**
+     * @return State of the car after the event
+     */
+    public Car.State getState(int record) {
+        return STATES[records.get(offset(record) + 21)];
+    }
+
+    private int offset(int record) {
+        if (record < 0 || record >= size())
+            throw new IndexOutOfBoundsException("Record " + record + " is not in the trip journal");
+        return (int) ((recorded - size() + record) % capacity) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,127 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Effective vehicle parameters of a single simulation run.
+ * The battery capacity and charging power coefficients and the season are applied once when the object is created,
+ * after which it is never modified. Simulations with different parameters can therefore run side by side.
+ */
+public final class VehicleParameters {
+
+    private final double batteryCapacityCoefficient;
+    private final double chargingPowerCoefficient;
+    private final boolean winter;
+
+    // Indexed by CarType ordinal
+    private final double[] capacity; // kWh
+    private final double[] maxChargingPowerAC; // kW
+    private final double[] maxChargingPowerDC; // kW
+    private final double[] drivingEfficiency; // kWh / 100km
+    private final ChargingCurve[] chargingCurve;
+    private final double[] chargingCurveCoefficient;
+    // Charging models by the power of the charger, two maps per car type: AC at 2 * ordinal and DC at 2 * ordinal + 1
+    private final List<ConcurrentHashMap<Double, ChargingModel>> chargingModels;
+
+    // Weighted by the amount of each car type
+    private final double averageCapacity;
+    private final double averageChargingPowerAC;
+    private final double averageChargingPowerDC;
+
+    public VehicleParameters(double batteryCapacityCoefficient_, double chargingPowerCoefficient_, boolean winter_) {
+        batteryCapacityCoefficient = batteryCapacityCoefficient_;
+        chargingPowerCoefficient = chargingPowerCoefficient_;
+        winter = winter_;
+
+        CarType[] carTypes = CarType.values();
+        capacity = new double[carTypes.length];
+        maxChargingPowerAC = new double[carTypes.length];
+        maxChargingPowerDC = new double[carTypes.length];
+        drivingEfficiency = new double[carTypes.length];
+        chargingCurve = new ChargingCurve[carTypes.length];
+        chargingCurveCoefficient = new double[carTypes.length];
+        chargingModels = new ArrayList<>(2 * carTypes.length);
+
+        double sumAC = 0, sumDC = 0, sumCapacity = 0;
+        int weightTotal = 0;
+        for (CarType carType : carTypes) {
+            int i = carType.ordinal();
+            double chargingCoefficient = winter ? carType.getWinterChargingCoefficient() : 1;
+            capacity[i] = carType.getCapacity() * batteryCapacityCoefficient;
+            maxChargingPowerAC[i] = carType.getMaxChargingPowerAC() * chargingCoefficient * chargingPowerCoefficient;
+            maxChargingPowerDC[i] = carType.getMaxChargingPowerDC() * chargingCoefficient * chargingPowerCoefficient;
+            // The greater the value of "drivingEfficiency", the worse the efficiency
+            drivingEfficiency[i] = winter ? carType.getDrivingEfficiency() / carType.getWinterDrivingCoefficient() : carType.getDrivingEfficiency();
+            chargingCurve[i] = ChargingCurve.getCurve(carType);
+            chargingCurveCoefficient[i] = chargingCoefficient * chargingPowerCoefficient;
+            chargingModels.add(new ConcurrentHashMap<>());
+            chargingModels.add(new ConcurrentHashMap<>());
+
+            sumAC += carType.getAmount() * maxChargingPowerAC[i];
+            sumDC += carType.getAmount() * maxChargingPowerDC[i];
+            sumCapacity += carType.getAmount() * capacity[i];
+            weightTotal += carType.getAmount();
+        }
+        averageChargingPowerAC = sumAC / weightTotal;
+        averageChargingPowerDC = sumDC / weightTotal;
+        averageCapacity = sumCapacity / weightTotal;
+    }
+
+    public double getCapacity(CarType carType) {
+        return capacity[carType.ordinal()];
+    }
+
+    public double getMaxChargingPowerAC(CarType carType) {
+        return maxChargingPowerAC[carType.ordinal()];
+    }
+
+    public double getMaxChargingPowerDC(CarType carType) {
+        return maxChargingPowerDC[carType.ordinal()];
+    }
+
+    public double getDrivingEfficiency(CarType carType) {
+        return drivingEfficiency[carType.ordinal()];
+    }
+
+    public ChargingCurve getChargingCurve(CarType carType) {
+        return chargingCurve[carType.ordinal()];
+    }
+
+    /**
+     * @return Charging of the car type at the charger. Type 2 and Työmaapistoke chargers are AC, the others DC.
+     * Compiled on the first call for each car type, current and charger power.
+     */
+    ChargingModel getChargingModel(CarType carType, ChargingStation.Charger charger) {
+        int i = carType.ordinal();
+        boolean isAC = charger.getType() == ChargingStation.ChargerType.Type2 || charger.getType() == ChargingStation.ChargerType.Tyomaapistoke;
+        double maxChargingPower = Math.min(isAC ? maxChargingPowerAC[i] : maxChargingPowerDC[i], charger.getPower());
+        return chargingModels.get(isAC ? 2 * i : 2 * i + 1).computeIfAbsent(charger.getPower(),
+                power -> chargingCurve[i].compile(capacity[i], chargingCurveCoefficient[i], maxChargingPower));
+    }
+
+    public double getAverageCapacity() {
+        return averageCapacity;
+    }
+
+    public double getAverageChargingPowerAC() {
+        return averageChargingPowerAC;
+    }
+
+    public double getAverageChargingPowerDC() {
+        return averageChargingPowerDC;
+    }
+
+    public double getBatteryCapacityCoefficient() {
+        return batteryCapacityCoefficient;
+    }
+
+    public double getChargingPowerCoefficient() {
+        return chargingPowerCoefficient;
+    }
+
+    public boolean isWinter() {
+        return winter;
+    }
+}
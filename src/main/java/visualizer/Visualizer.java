@@ -68,7 +68,7 @@ public class Visualizer {
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
         canvas = new Canvas();
-        wholeRoute = routes.generateShortestRoute2(EndPoint.Helsinki, EndPoint.Utsjoki);
+        wholeRoute = routes.getRoute(EndPoint.Helsinki, EndPoint.Utsjoki);
 
         optionsComponents = SwingHelper.getOptionsPanel(
                 actionEvent -> {
@@ -226,9 +226,9 @@ public class Visualizer {
                     } else if (car.getState() == Car.State.DestinationReached) {
                         g.setColor(new Color(255, 255, 255, CAR_OPACITY));
                     } else {
-                        double batteryPercentage = car.getBattery() / car.getCarType().getCapacity();
-                        int red = batteryPercentage > 0.5 ? 255 - (int) (car.getBattery() / car.getCarType().getCapacity() / 2 * 255) : 255;
-                        int green = batteryPercentage > 0.5 ? 255 : (int) (car.getBattery() / car.getCarType().getCapacity() * 2 * 255);
+                        double batteryPercentage = car.getBattery() / car.getCapacity();
+                        int red = batteryPercentage > 0.5 ? 255 - (int) (car.getBattery() / car.getCapacity() / 2 * 255) : 255;
+                        int green = batteryPercentage > 0.5 ? 255 : (int) (car.getBattery() / car.getCapacity() * 2 * 255);
                         g.setColor(new Color(red, green, 0, CAR_OPACITY));
                     }
                     break;
@@ -0,0 +1,59 @@
+package simulation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that every engine gives the same Statistics on fleets large enough for rounding differences between the ways
+ * the engines advance cars to show up. Run by Surefire as a plain class: public test methods, failures are thrown.
+ */
+public class EngineEquivalenceTest {
+
+    private static final int CARS = 20000;
+
+    public void testEnginesAgreeOnLargeFleet() {
+        assertSameDigests(1, 1, Simulation.Engine.Tick, 1, Simulation.Engine.DiscreteEvent, 1);
+    }
+
+    public void testEnginesAgreeOnCongestedLargeFleet() {
+        assertSameDigests(3, 0.5, Simulation.Engine.Tick, 1, Simulation.Engine.Fleet, 4);
+        assertSameDigests(3, 0.5, Simulation.Engine.Tick, 1, Simulation.Engine.DiscreteEvent, 1);
+    }
+
+    private static void assertSameDigests(long seed, double chargerAmountCoefficient,
+                                          Simulation.Engine expectedEngine, int expectedThreads,
+                                          Simulation.Engine engine, int threads) {
+        String expected = digest(seed, chargerAmountCoefficient, expectedEngine, expectedThreads);
+        String actual = digest(seed, chargerAmountCoefficient, engine, threads);
+        if (!expected.equals(actual))
+            throw new AssertionError(String.format("Seed %d, %d cars: %s gave %s but %s on %d threads gave %s",
+                    seed, CARS, expectedEngine, expected, engine, threads, actual));
+    }
+
+    private static String digest(long seed, double chargerAmountCoefficient, Simulation.Engine engine, int threads) {
+        Logger.getGlobal().setLevel(Level.WARNING);
+        Routes routes = new Routes(seed, chargerAmountCoefficient);
+        routes.generateRoutes();
+        Simulation simulation = new Simulation("equivalence", routes, CARS, 21600, 4 * 21600, false, false, 1, 1);
+        simulation.setEngine(engine);
+        simulation.setThreads(threads);
+        simulation.start();
+        Statistics statistics = new Statistics(simulation);
+        return "cars=" + sha256(statistics.carStatisticsToCSV()) + " stats=" + sha256(statistics.statisticsToCSV());
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder s = new StringBuilder();
+            for (int i = 0; i < 6; i++)
+                s.append(String.format("%02x", hash[i]));
+            return s.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}